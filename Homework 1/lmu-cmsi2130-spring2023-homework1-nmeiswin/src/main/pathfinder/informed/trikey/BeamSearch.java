@@ -0,0 +1,394 @@
+package main.pathfinder.informed.trikey;
+
+import java.util.*;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Bounded-frontier approximate mode for the tri-key problem: a beam search
+ * that expands the maze one layer of moves at a time and keeps only the best W
+ * nodes (by f = g + h) of each layer, so that memory and time per layer stay
+ * fixed regardless of maze size. Duplicates are only detected within a layer
+ * and against a fixed-size table of recently beamed states, and a stranded
+ * beam is widened a bounded number of times, so the whole search is bounded too.
+ * Returns a valid, though possibly suboptimal, solution along with how far its
+ * cost can be from optimal, or null if the beam found none.
+ */
+public class BeamSearch {
+
+    /**
+     * Outcome of a beam search: the solution found plus its cost and the
+     * admissible lower bound on the optimal cost that it can be judged against.
+     */
+    public static class Result {
+
+        private final List<String> actions;
+        private final int cost, lowerBound, width;
+
+        /**
+         * Constructs a new beam search Result.
+         *
+         * @param actions    The actions of the solution found.
+         * @param cost       The cost of the solution found.
+         * @param lowerBound An admissible lower bound on the optimal cost.
+         * @param width      The beam width that found the solution.
+         */
+        Result(List<String> actions, int cost, int lowerBound, int width) {
+            this.actions = actions;
+            this.cost = cost;
+            this.lowerBound = lowerBound;
+            this.width = width;
+        }
+
+        /**
+         * @return The solution found, of the format: ["R", "R", "L", ...]
+         */
+        public List<String> actions() {
+            return actions;
+        }
+
+        /**
+         * @return The cost of the solution found.
+         */
+        public int cost() {
+            return cost;
+        }
+
+        /**
+         * @return An admissible lower bound on the cost of an optimal solution.
+         */
+        public int lowerBound() {
+            return lowerBound;
+        }
+
+        /**
+         * @return The largest amount by which the solution's cost may exceed the
+         *         optimal cost.
+         */
+        public int gap() {
+            return cost - lowerBound;
+        }
+
+        /**
+         * @return The beam width that found the solution, which is larger than the
+         *         requested width only if narrower beams ran into dead ends.
+         */
+        public int width() {
+            return width;
+        }
+
+    }
+
+    // Times a stranded beam is retried at double the width before giving up
+    public static final int MAX_WIDENINGS = 2;
+    // The widest beam that may be requested, so that its widest retry and the
+    // arrays sized from it stay well within int range
+    public static final int MAX_WIDTH = 1 << 20;
+    // Slots of the table of recently beamed states, per node of beam width, up to
+    // a fixed 2^MAX_SEEN_BITS slots (8 MB) however wide the beam
+    private static final int SEEN_SLOTS_PER_NODE = 16, MAX_SEEN_BITS = 20;
+
+    /**
+     * Beam searches the given maze estimating its distances by Manhattan distance
+     * scaled by the maze's cheapest tile; no per-cell tables are built, so memory
+     * depends on the width alone.
+     *
+     * @param problem The maze to solve.
+     * @param width   The number of nodes kept per layer, W.
+     * @return The beam search Result, or null if no solution was found.
+     * @throws IllegalArgumentException if width is not positive or exceeds
+     *                                  MAX_WIDTH.
+     */
+    public static Result search(MazeProblem problem, int width) {
+        int cols = problem.getCols(), minCost = problem.getMinCost();
+        List<MazeState> keys = problem.getOrderedKeys();
+        int[] keyCells = new int[keys.size()];
+        for (int k = 0; k < keyCells.length; k++) {
+            keyCells[k] = keys.get(k).row() * cols + keys.get(k).col();
+        }
+        MazeState initial = problem.getInitial();
+        int start = initial == null ? -1 : initial.row() * cols + initial.col();
+        return search(problem, start, keyCells, (k, cell) -> minCost
+                * (Math.abs(cell / cols - keyCells[k] / cols) + Math.abs(cell % cols - keyCells[k] % cols)), width);
+    }
+
+    /**
+     * Beam searches the given maze using the distance fields of an existing index
+     * for its heuristic, which are tighter than the Manhattan estimate and prune
+     * cells that cannot reach a key.
+     *
+     * @param problem The maze to solve.
+     * @param index   A MazeIndex that is current for the maze.
+     * @param width   The number of nodes kept per layer, W.
+     * @return The beam search Result, or null if no solution was found.
+     * @throws IllegalArgumentException if width is not positive or exceeds
+     *                                  MAX_WIDTH.
+     */
+    public static Result search(MazeProblem problem, MazeIndex index, int width) {
+        int[] keyCells = new int[index.keyCount()];
+        for (int k = 0; k < keyCells.length; k++) {
+            keyCells[k] = index.keyCell(k);
+        }
+        return search(problem, index.initialCell(), keyCells, index::distance, width);
+    }
+
+    /**
+     * Beam searches the maze with the admissible heuristic built from the given
+     * distances, which also lower-bounds the optimal cost from the initial state.
+     * A beam only remembers the states of recent layers, so a narrow one can
+     * strand itself in a dead end or wander; it is then retried at double the
+     * width, at most MAX_WIDENINGS times, after which the search gives up.
+     *
+     * @param problem  The maze to solve.
+     * @param start    The row-major cell of the initial state, or -1 if none.
+     * @param keyCells The row-major cell of each key.
+     * @param distance The estimated cost from a cell to a key, given the key's
+     *                 index and the cell, or DistanceField.UNREACHABLE.
+     * @param width    The number of nodes kept per layer, W.
+     * @return The beam search Result, or null if no solution was found.
+     */
+    private static Result search(MazeProblem problem, int start, int[] keyCells, IntBinaryOperator distance,
+            int width) {
+        if (width < 1 || width > MAX_WIDTH) {
+            throw new IllegalArgumentException("Beam width must be between 1 and " + MAX_WIDTH);
+        }
+        // A beam as wide as the state space keeps every state of each layer, so
+        // no wider beam could do better
+        long states = (long) problem.getRows() * problem.getCols() << keyCells.length;
+        for (int widening = 0; widening <= MAX_WIDENINGS; widening++) {
+            long w = Math.min((long) width << widening, states);
+            Result result = beam(problem, start, keyCells, distance, (int) w);
+            if (result != null || w == states) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs a single beam search of the given width, for at most one layer per
+     * cell for each leg between keys.
+     *
+     * @return The beam search Result, or null if the beam ran out of nodes or
+     *         layers.
+     */
+    private static Result beam(MazeProblem problem, int start, int[] keyCells, IntBinaryOperator distance,
+            int width) {
+        int cols = problem.getCols(), full = (1 << keyCells.length) - 1;
+        if (start < 0 || heuristic(distance, keyCells, start, 0) == DistanceField.UNREACHABLE) {
+            return null;
+        }
+        int lowerBound = heuristic(distance, keyCells, start, 0);
+        if (full == 0) {
+            return new Result(new ArrayList<>(), 0, 0, width);
+        }
+        long layers = (long) problem.getRows() * cols * (keyCells.length + 1);
+
+        // The nodes of the current beam and their ancestors, so that solutions can
+        // be traced back through their parents; nodes no beam descends from any
+        // more are dropped whenever the pool doubles
+        NodePool pool = new NodePool(width * 8);
+        long compactAt = width * 8L;
+        int[] beam = new int[width], next = new int[width];
+        beam[0] = pool.add(start, 0, 0, -1, -1);
+        int beamSize = 1;
+        NodePool candidates = new NodePool(4 * width);
+        long[] ranked = new long[4 * width];
+        Map<Long, Integer> bestOfLayer = new HashMap<>();
+        // Lossy table of states that have been in a beam, each slot holding the
+        // latest state hashed to it plus one; it keeps beams from cycling without
+        // growing with the maze
+        int bits = Math.min(MAX_SEEN_BITS, 64 - Long.numberOfLeadingZeros((long) width * SEEN_SLOTS_PER_NODE - 1));
+        long[] seen = new long[1 << bits];
+        seen[slot(start, bits)] = start + 1;
+
+        for (long layer = 0; beamSize > 0 && layer < layers; layer++) {
+            int goal = -1;
+            candidates.size = 0;
+            bestOfLayer.clear();
+            for (int b = 0; b < beamSize; b++) {
+                int node = beam[b], cell = pool.cell[node], col = cell % cols, row = cell / cols;
+                for (int d = 0; d < 4; d++) {
+                    if (!problem.canMove(col, row, d)) {
+                        continue;
+                    }
+                    int nc = col + MazeProblem.D_COL[d], nr = row + MazeProblem.D_ROW[d], child = nr * cols + nc;
+                    int mask = pool.mask[node] | keyBit(keyCells, child);
+                    int g = pool.g[node] + problem.getCost(nc, nr), h = heuristic(distance, keyCells, child, mask);
+                    if (h == DistanceField.UNREACHABLE) {
+                        continue;
+                    }
+                    // Keep only the cheapest way of reaching each state in a layer
+                    long state = ((long) mask << 32) | child;
+                    Integer dup = bestOfLayer.get(state);
+                    if (seen[slot(state, bits)] == state + 1 || (dup != null && candidates.g[dup] <= g)) {
+                        continue;
+                    }
+                    int id = candidates.add(child, mask, g, node, d);
+                    bestOfLayer.put(state, id);
+                    ranked[id] = ((long) (g + h) << 32) | id;
+                    if (mask == full && (goal < 0 || g < candidates.g[goal])) {
+                        goal = id;
+                    }
+                }
+            }
+            if (goal >= 0) {
+                int node = pool.add(candidates.cell[goal], full, candidates.g[goal], candidates.parent[goal],
+                        candidates.action[goal]);
+                return new Result(pool.trace(node), pool.g[node], lowerBound, width);
+            }
+
+            // Sorting packed (f, id) pairs orders candidates by f; superseded
+            // duplicates of a state are skipped while filling the next beam
+            Arrays.sort(ranked, 0, candidates.size);
+            int kept = 0;
+            for (int i = 0; i < candidates.size && kept < width; i++) {
+                int id = (int) ranked[i];
+                long state = ((long) candidates.mask[id] << 32) | candidates.cell[id];
+                if (bestOfLayer.get(state) == id) {
+                    seen[slot(state, bits)] = state + 1;
+                    next[kept++] = pool.add(candidates.cell[id], candidates.mask[id], candidates.g[id],
+                            candidates.parent[id], candidates.action[id]);
+                }
+            }
+            int[] swap = beam;
+            beam = next;
+            next = swap;
+            beamSize = kept;
+            if (pool.size >= compactAt) {
+                pool.compact(beam, beamSize);
+                compactAt = Math.max(width * 8L, 2L * pool.size);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Admissible heuristic: the least, over the keys not yet collected in mask, of
+     * the cost to reach that key first plus the cost from it to the farthest
+     * other uncollected key, since any solution must collect some key first and
+     * then still reach every other one.
+     */
+    private static int heuristic(IntBinaryOperator distance, int[] keyCells, int cell, int mask) {
+        if (mask == (1 << keyCells.length) - 1) {
+            return 0;
+        }
+        int h = DistanceField.UNREACHABLE;
+        for (int k = 0; k < keyCells.length; k++) {
+            int toKey = distance.applyAsInt(k, cell);
+            if ((mask & (1 << k)) != 0 || toKey == DistanceField.UNREACHABLE) {
+                continue;
+            }
+            int onward = 0;
+            for (int j = 0; j < keyCells.length; j++) {
+                if (j != k && (mask & (1 << j)) == 0) {
+                    onward = Math.max(onward, distance.applyAsInt(j, keyCells[k]));
+                }
+            }
+            if (onward != DistanceField.UNREACHABLE) {
+                h = Math.min(h, toKey + onward);
+            }
+        }
+        return h;
+    }
+
+    /**
+     * @return The mask bit of the key at the given cell, or 0 if there is none.
+     */
+    private static int keyBit(int[] keyCells, int cell) {
+        for (int k = 0; k < keyCells.length; k++) {
+            if (keyCells[k] == cell) {
+                return 1 << k;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return The slot of the given state in a table of 2^bits slots.
+     */
+    private static int slot(long state, int bits) {
+        return (int) ((state * 0x9E3779B97F4A7C15L) >>> (64 - bits));
+    }
+
+    /**
+     * Growable, array-backed store of search nodes addressed by integer id.
+     */
+    private static class NodePool {
+
+        int[] cell, mask, g, parent, action;
+        int size;
+
+        NodePool(int capacity) {
+            cell = new int[capacity];
+            mask = new int[capacity];
+            g = new int[capacity];
+            parent = new int[capacity];
+            action = new int[capacity];
+        }
+
+        /**
+         * Adds a node to the pool, returning its id.
+         */
+        int add(int cell, int mask, int g, int parent, int action) {
+            if (size == this.cell.length) {
+                int capacity = size * 2;
+                this.cell = Arrays.copyOf(this.cell, capacity);
+                this.mask = Arrays.copyOf(this.mask, capacity);
+                this.g = Arrays.copyOf(this.g, capacity);
+                this.parent = Arrays.copyOf(this.parent, capacity);
+                this.action = Arrays.copyOf(this.action, capacity);
+            }
+            this.cell[size] = cell;
+            this.mask[size] = mask;
+            this.g[size] = g;
+            this.parent[size] = parent;
+            this.action[size] = action;
+            return size++;
+        }
+
+        /**
+         * Drops every node that is neither in the given beam nor an ancestor of one
+         * of its nodes, renumbering the rest in place and the beam to match.
+         */
+        void compact(int[] beam, int beamSize) {
+            boolean[] live = new boolean[size];
+            for (int b = 0; b < beamSize; b++) {
+                for (int node = beam[b]; node >= 0 && !live[node]; node = parent[node]) {
+                    live[node] = true;
+                }
+            }
+            // Parents are always added before their children, so renumbering in
+            // order never overwrites a node still to be moved
+            int[] renumbered = new int[size];
+            int kept = 0;
+            for (int node = 0; node < size; node++) {
+                if (live[node]) {
+                    renumbered[node] = kept;
+                    cell[kept] = cell[node];
+                    mask[kept] = mask[node];
+                    g[kept] = g[node];
+                    parent[kept] = parent[node] < 0 ? -1 : renumbered[parent[node]];
+                    action[kept] = action[node];
+                    kept++;
+                }
+            }
+            size = kept;
+            for (int b = 0; b < beamSize; b++) {
+                beam[b] = renumbered[beam[b]];
+            }
+        }
+
+        /**
+         * Returns the actions that lead from the root to the given node.
+         */
+        List<String> trace(int node) {
+            LinkedList<String> actions = new LinkedList<>();
+            for (; parent[node] >= 0; node = parent[node]) {
+                actions.addFirst(MazeProblem.ACTIONS[action[node]]);
+            }
+            return new ArrayList<>(actions);
+        }
+
+    }
+
+}
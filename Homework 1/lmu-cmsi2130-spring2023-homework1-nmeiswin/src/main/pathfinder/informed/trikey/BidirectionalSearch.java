@@ -0,0 +1,244 @@
+package main.pathfinder.informed.trikey;
+
+import java.util.*;
+
+/**
+ * Bidirectional A* for point-to-point legs of a MazeProblem: from one tile to
+ * another, ignoring keys. A forward search from the start and a backward search
+ * from the target run on the same reduced costs, using the average of the two
+ * Manhattan heuristics as a potential, so each search stays consistent however
+ * mud or terrain costs vary. Whichever frontier is smaller is expanded next.
+ * Every time the two searches label a common tile, the best meeting cost mu is
+ * updated. The search stops once the two frontier minima together reach mu,
+ * after which no cheaper path can exist.
+ * <br>
+ * An instance reuses its per-cell arrays between legs, resetting only the
+ * cells each leg touched, so many legs over the same maze stay cheap.
+ */
+public class BidirectionalSearch {
+
+    /**
+     * A solved leg: its cost and the actions that travel it.
+     */
+    static class Leg {
+
+        final int cost;
+        final List<String> actions;
+
+        Leg(int cost, List<String> actions) {
+            this.cost = cost;
+            this.actions = actions;
+        }
+
+    }
+
+    // Most cells for which an instance will allocate its per-cell arrays
+    private static final long MAX_CELLS = 1 << 24;
+
+    // Fields
+    // -----------------------------------------------------------------------------
+    private final MazeProblem problem;
+    private final int cols;
+    // Costs from the start and to the target, and the direction of the move into
+    // (forward) or out of (backward) each labelled cell
+    private final int[] distF, distB;
+    private final byte[] dirF, dirB;
+    private final LongHeap frontierF, frontierB;
+    private int[] touched = new int[64];
+    private int touchedCount;
+
+    /**
+     * Constructs a search over the given maze.
+     *
+     * @param problem The maze whose legs are searched.
+     */
+    BidirectionalSearch(MazeProblem problem) {
+        this.problem = problem;
+        this.cols = problem.getCols();
+        int cells = problem.getRows() * cols;
+        this.distF = new int[cells];
+        this.distB = new int[cells];
+        this.dirF = new byte[cells];
+        this.dirB = new byte[cells];
+        Arrays.fill(distF, DistanceField.UNREACHABLE);
+        Arrays.fill(distB, DistanceField.UNREACHABLE);
+        this.frontierF = new LongHeap(64);
+        this.frontierB = new LongHeap(64);
+    }
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Determines whether the given maze is small enough for an instance's dense
+     * per-cell arrays; larger mazes, such as tiled ones bigger than memory, should
+     * be searched without them.
+     *
+     * @param problem The maze to check.
+     * @return true if a BidirectionalSearch may be constructed over the maze.
+     */
+    static boolean fits(MazeProblem problem) {
+        return (long) problem.getRows() * problem.getCols() <= MAX_CELLS;
+    }
+
+    /**
+     * Finds a cheapest route between two tiles of the given maze, where (as in the
+     * MazeProblem) each move costs the tile it enters.
+     *
+     * @param problem The maze to travel through.
+     * @param from    The starting tile.
+     * @param to      The target tile.
+     * @return The actions of an optimal route, of the format ["R", "R", "L", ...],
+     *         or null if the target cannot be reached.
+     */
+    public static List<String> solve(MazeProblem problem, MazeState from, MazeState to) {
+        int cols = problem.getCols();
+        Leg leg = new BidirectionalSearch(problem).leg(from.row() * cols + from.col(), to.row() * cols + to.col());
+        return leg == null ? null : leg.actions;
+    }
+
+    /**
+     * Finds a cheapest leg between two row-major cells.
+     *
+     * @param from The starting cell.
+     * @param to   The target cell.
+     * @return The optimal leg, or null if the target cannot be reached.
+     */
+    Leg leg(int from, int to) {
+        if (from == to) {
+            return new Leg(0, new ArrayList<>());
+        }
+        // Keys are doubled so that the averaged potential stays integral, and
+        // offset by the start-to-target estimate so that they stay non-negative
+        int offset = estimate(from, to);
+        int best = DistanceField.UNREACHABLE, meet = -1;
+        label(from, distF, 0);
+        label(to, distB, 0);
+        frontierF.add(LongHeap.pack(keyF(from, from, to, 0) + offset, from));
+        frontierB.add(LongHeap.pack(keyB(to, from, to, 0) + offset, to));
+        while (!frontierF.isEmpty() && !frontierB.isEmpty()) {
+            long topF = frontierF.peek() >>> 32, topB = frontierB.peek() >>> 32;
+            if (best != DistanceField.UNREACHABLE && topF + topB >= 2L * best + 2L * offset) {
+                break;
+            }
+            boolean forward = frontierF.size() <= frontierB.size();
+            long top = forward ? frontierF.remove() : frontierB.remove();
+            int cell = (int) top, col = cell % cols, row = cell / cols;
+            int[] dist = forward ? distF : distB;
+            int key = forward ? keyF(cell, from, to, dist[cell]) : keyB(cell, from, to, dist[cell]);
+            if ((int) (top >>> 32) > key + offset) {
+                continue;
+            }
+            for (int d = 0; d < 4; d++) {
+                int next, g;
+                if (forward) {
+                    if (!problem.canMove(col, row, d)) {
+                        continue;
+                    }
+                    int nc = col + MazeProblem.D_COL[d], nr = row + MazeProblem.D_ROW[d];
+                    next = nr * cols + nc;
+                    g = distF[cell] + problem.getCost(nc, nr);
+                } else {
+                    // Relax each predecessor that can legally move into cell
+                    int pc = col - MazeProblem.D_COL[d], pr = row - MazeProblem.D_ROW[d];
+                    if (problem.getTile(pc, pr) == 'X' || !problem.canMove(pc, pr, d)) {
+                        continue;
+                    }
+                    next = pr * cols + pc;
+                    g = distB[cell] + problem.getCost(col, row);
+                }
+                if (g >= dist[next]) {
+                    continue;
+                }
+                label(next, dist, g);
+                if (forward) {
+                    dirF[next] = (byte) d;
+                    frontierF.add(LongHeap.pack(keyF(next, from, to, g) + offset, next));
+                } else {
+                    dirB[next] = (byte) d;
+                    frontierB.add(LongHeap.pack(keyB(next, from, to, g) + offset, next));
+                }
+                int other = forward ? distB[next] : distF[next];
+                if (other != DistanceField.UNREACHABLE && g + other < best) {
+                    best = g + other;
+                    meet = next;
+                }
+            }
+        }
+        Leg leg = (meet < 0) ? null : new Leg(best, trace(from, to, meet));
+        reset();
+        return leg;
+    }
+
+    /**
+     * @return The actions from the start through the meeting cell to the target.
+     */
+    private List<String> trace(int from, int to, int meet) {
+        LinkedList<String> actions = new LinkedList<>();
+        for (int cell = meet; cell != from; cell -= delta(dirF[cell])) {
+            actions.addFirst(MazeProblem.ACTIONS[dirF[cell]]);
+        }
+        for (int cell = meet; cell != to; cell += delta(dirB[cell])) {
+            actions.addLast(MazeProblem.ACTIONS[dirB[cell]]);
+        }
+        return new ArrayList<>(actions);
+    }
+
+    /**
+     * @return The change in row-major cell index of a move in direction d.
+     */
+    private int delta(int d) {
+        return MazeProblem.D_ROW[d] * cols + MazeProblem.D_COL[d];
+    }
+
+    /**
+     * Admissible estimate of the cost between two cells: their Manhattan distance
+     * scaled by the maze's cheapest tile.
+     */
+    private int estimate(int a, int b) {
+        return problem.getMinCost() * (Math.abs(a % cols - b % cols) + Math.abs(a / cols - b / cols));
+    }
+
+    /**
+     * Doubled forward key of a cell reached at cost g: 2g plus the difference of
+     * its estimates to the target and from the start.
+     */
+    private int keyF(int cell, int from, int to, int g) {
+        return 2 * g + estimate(cell, to) - estimate(from, cell);
+    }
+
+    /**
+     * Doubled backward key of a cell at cost g from the target, using the negated
+     * forward potential so both searches share the same reduced costs.
+     */
+    private int keyB(int cell, int from, int to, int g) {
+        return 2 * g - estimate(cell, to) + estimate(from, cell);
+    }
+
+    /**
+     * Records a cell's cost in the given distance array, remembering it for reset.
+     */
+    private void label(int cell, int[] dist, int g) {
+        if (distF[cell] == DistanceField.UNREACHABLE && distB[cell] == DistanceField.UNREACHABLE) {
+            if (touchedCount == touched.length) {
+                touched = Arrays.copyOf(touched, touchedCount * 2);
+            }
+            touched[touchedCount++] = cell;
+        }
+        dist[cell] = g;
+    }
+
+    /**
+     * Clears the cells and frontiers used by the last leg.
+     */
+    private void reset() {
+        for (int i = 0; i < touchedCount; i++) {
+            distF[touched[i]] = DistanceField.UNREACHABLE;
+            distB[touched[i]] = DistanceField.UNREACHABLE;
+        }
+        touchedCount = 0;
+        frontierF.clear();
+        frontierB.clear();
+    }
+
+}
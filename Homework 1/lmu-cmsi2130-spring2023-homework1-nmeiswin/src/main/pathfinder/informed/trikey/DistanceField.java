@@ -0,0 +1,60 @@
+package main.pathfinder.informed.trikey;
+
+import java.util.Arrays;
+
+/**
+ * Computes mud-aware distance fields over a MazeProblem's grid: for a target
+ * tile, the cheapest cost of reaching it from every cell in the maze, where (as
+ * in the MazeProblem) each move costs the tile it enters. Cells are indexed
+ * row-major as <code>row * cols + col</code>.
+ */
+public class DistanceField {
+
+    /**
+     * Distance reported for cells that cannot reach the target (and for walls).
+     */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /**
+     * Computes the cost of travelling from every cell of the maze to the given
+     * target tile, using a Dijkstra search backwards from the target.
+     * 
+     * @param problem The maze to compute distances over.
+     * @param col     The target's column.
+     * @param row     The target's row.
+     * @return Row-major array of costs to reach the target, UNREACHABLE where
+     *         there is no path.
+     */
+    public static int[] toTarget(MazeProblem problem, int col, int row) {
+        int cols = problem.getCols(), size = problem.getRows() * cols;
+        int[] dist = new int[size];
+        Arrays.fill(dist, UNREACHABLE);
+        int target = row * cols + col;
+        dist[target] = 0;
+        LongHeap frontier = new LongHeap(size);
+        frontier.add(LongHeap.pack(0, target));
+        while (!frontier.isEmpty()) {
+            long top = frontier.remove();
+            int cell = (int) top, d = (int) (top >>> 32);
+            if (d > dist[cell]) {
+                continue;
+            }
+            // Relax every predecessor p that can legally move into cell, paying
+            // the cost of entering cell
+            int c = cell % cols, r = cell / cols, enter = d + problem.getCost(c, r);
+            for (int dir = 0; dir < 4; dir++) {
+                int pc = c - MazeProblem.D_COL[dir], pr = r - MazeProblem.D_ROW[dir];
+                if (problem.getTile(pc, pr) == 'X' || !problem.canMove(pc, pr, dir)) {
+                    continue;
+                }
+                int pred = pr * cols + pc;
+                if (enter < dist[pred]) {
+                    dist[pred] = enter;
+                    frontier.add(LongHeap.pack(enter, pred));
+                }
+            }
+        }
+        return dist;
+    }
+
+}
@@ -0,0 +1,108 @@
+package main.pathfinder.informed.trikey;
+
+import java.util.Arrays;
+
+/**
+ * Growable binary min-heap of primitive longs, used by the grid engines as a
+ * priority queue without boxing. Callers pack their priority into the high bits
+ * of each entry (e.g., cost &lt;&lt; 32 | cell) so that natural long ordering is
+ * the priority ordering.
+ */
+class LongHeap {
+
+    private long[] heap;
+    private int size;
+
+    /**
+     * Constructs a new, empty LongHeap with the given initial capacity.
+     * 
+     * @param capacity Initial number of entries that fit before growing.
+     */
+    LongHeap(int capacity) {
+        this.heap = new long[Math.max(capacity, 16)];
+    }
+
+    /**
+     * Packs a non-negative priority and payload into a single heap entry.
+     * 
+     * @param priority The priority, smaller being removed first.
+     * @param payload  The 32-bit payload (typically a cell index).
+     * @return The packed entry.
+     */
+    static long pack(int priority, int payload) {
+        return ((long) priority << 32) | (payload & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return Whether or not the heap holds no entries.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return The number of entries in the heap.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes all entries, keeping the backing array for reuse.
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Adds the given entry to the heap.
+     * 
+     * @param value The packed entry to add.
+     */
+    void add(long value) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= value) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = value;
+    }
+
+    /**
+     * @return The smallest entry without removing it.
+     */
+    long peek() {
+        return heap[0];
+    }
+
+    /**
+     * Removes and returns the smallest entry.
+     * 
+     * @return The smallest entry.
+     */
+    long remove() {
+        long top = heap[0], last = heap[--size];
+        int i = 0, half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (last <= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return top;
+    }
+
+}
@@ -0,0 +1,89 @@
+package main.pathfinder.informed.trikey;
+
+/**
+ * Set of non-negative longs, e.g., packed (time, cell) keys: the on-heap
+ * counterpart of OffHeapStateTable, an open-addressing hash table with linear
+ * probing over a long[] that is rehashed into double the slots once half full.
+ * Adding and probing never box a key.
+ */
+class LongSet {
+
+    private long[] slots;
+    private int size;
+
+    // Marks a slot as occupied, so that a zeroed slot reads as empty
+    private static final long OCCUPIED = 1L << 63;
+
+    /**
+     * Constructs a new, empty set with room for the given number of keys before
+     * it grows.
+     *
+     * @param expected Number of keys expected.
+     */
+    LongSet(int expected) {
+        slots = new long[Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1];
+    }
+
+    /**
+     * @return The number of keys in the set.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Determines whether the given key is in the set.
+     *
+     * @param key A non-negative key.
+     * @return true if the key is in the set, false otherwise.
+     */
+    boolean contains(long key) {
+        return slots[find(key)] != 0;
+    }
+
+    /**
+     * Adds the given key to the set.
+     *
+     * @param key A non-negative key.
+     * @return true if the key was added, false if it was already in the set.
+     */
+    boolean add(long key) {
+        int slot = find(key);
+        if (slots[slot] != 0) {
+            return false;
+        }
+        if (2 * (size + 1) > slots.length) {
+            rehash();
+            slot = find(key);
+        }
+        slots[slot] = key | OCCUPIED;
+        size++;
+        return true;
+    }
+
+    /**
+     * Returns the slot holding the given key, or the empty slot where it belongs.
+     */
+    private int find(long key) {
+        int mask = slots.length - 1, slot = (int) OffHeapStateTable.mix(key) & mask;
+        long stored = key | OCCUPIED;
+        while (slots[slot] != 0 && slots[slot] != stored) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the set's capacity, reinserting every key.
+     */
+    private void rehash() {
+        long[] old = slots;
+        slots = new long[2 * old.length];
+        for (long stored : old) {
+            if (stored != 0) {
+                slots[find(stored & ~OCCUPIED)] = stored;
+            }
+        }
+    }
+
+}
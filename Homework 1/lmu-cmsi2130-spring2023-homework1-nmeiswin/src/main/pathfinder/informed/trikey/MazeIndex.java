@@ -0,0 +1,330 @@
+package main.pathfinder.informed.trikey;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Precomputed, persistable index of a MazeProblem holding its packed grid, key
+ * positions, per-key distance fields, and connected-component labels. An index
+ * is built once, written to disk, and later memory-mapped at startup so that
+ * none of it has to be recomputed; a checksum of the source maze detects when
+ * a stored index has gone stale.
+ *
+ * <pre>
+ * File layout (big-endian):
+ *   int  MAGIC, int VERSION, long source checksum
+ *   int  rows, int cols, int initial cell (-1 if none), int key count
+ *   int[keys]         key cells
+ *   int[cells]        component labels (-1 for walls)
+ *   int[keys][cells]  distance fields (DistanceField.UNREACHABLE if no path)
+ *   byte[cells]       packed grid tiles
+ * </pre>
+ *
+ * Cells are indexed row-major as <code>row * cols + col</code>.
+ */
+public class MazeIndex {
+
+    // Fields
+    // -----------------------------------------------------------------------------
+    private final ByteBuffer data;
+    private final int rows, cols, cells, keyCount;
+    private final int componentsOffset, distancesOffset, gridOffset;
+
+    // Constants
+    // -----------------------------------------------------------------------------
+    private static final int MAGIC = 0x4D5A4958; // "MZIX"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+
+    // Constructors
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Wraps a buffer holding a complete index in the file layout, validating its
+     * header.
+     *
+     * @param data Buffer holding the index.
+     * @throws IOException if the buffer is not a supported index.
+     */
+    private MazeIndex(ByteBuffer data) throws IOException {
+        if (data.capacity() < HEADER_BYTES || data.getInt(0) != MAGIC) {
+            throw new IOException("Not a maze index");
+        }
+        if (data.getInt(4) != VERSION) {
+            throw new IOException("Unsupported maze index version " + data.getInt(4));
+        }
+        this.data = data;
+        this.rows = data.getInt(16);
+        this.cols = data.getInt(20);
+        this.cells = rows * cols;
+        this.keyCount = data.getInt(28);
+        this.componentsOffset = HEADER_BYTES + 4 * keyCount;
+        this.distancesOffset = componentsOffset + 4 * cells;
+        this.gridOffset = distancesOffset + 4 * keyCount * cells;
+        if (data.capacity() != gridOffset + cells) {
+            throw new IOException("Truncated maze index");
+        }
+    }
+
+    /**
+     * Builds a new in-memory index for the given maze, computing each key's
+     * distance field and the maze's connected components.
+     *
+     * @param problem The maze to index.
+     * @return The index of the maze.
+     */
+    public static MazeIndex build(MazeProblem problem) {
+        int rows = problem.getRows(), cols = problem.getCols(), cells = rows * cols;
+        List<MazeState> keys = problem.getOrderedKeys();
+        MazeState initial = problem.getInitial();
+        ByteBuffer data = ByteBuffer.allocate(HEADER_BYTES + 4 * keys.size() + 4 * cells
+                + 4 * keys.size() * cells + cells);
+
+        data.putInt(MAGIC).putInt(VERSION).putLong(checksum(problem));
+        data.putInt(rows).putInt(cols);
+        data.putInt(initial == null ? -1 : initial.row() * cols + initial.col());
+        data.putInt(keys.size());
+        for (MazeState key : keys) {
+            data.putInt(key.row() * cols + key.col());
+        }
+        for (int label : labelComponents(problem)) {
+            data.putInt(label);
+        }
+        // Dijkstra unless the maze is open enough for the sweeps to win
+        DistanceSweeper sweeper = DistanceSweeper.suits(problem) ? new DistanceSweeper(problem) : null;
+        for (MazeState key : keys) {
+            int[] field = sweeper == null ? DistanceField.toTarget(problem, key.col(), key.row())
+                    : sweeper.toTarget(key.col(), key.row());
+            for (int d : field) {
+                data.putInt(d);
+            }
+        }
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                data.put((byte) problem.getTile(col, row));
+            }
+        }
+        try {
+            return new MazeIndex(data);
+        } catch (IOException e) {
+            throw new IllegalStateException("Built a malformed maze index", e);
+        }
+    }
+
+    /**
+     * Memory-maps a previously written index file. Only the header is read here;
+     * the rest of the index is paged in as it is accessed.
+     *
+     * @param file The index file to map.
+     * @return The mapped index.
+     * @throws IOException if the file cannot be read or is not a valid index.
+     */
+    public static MazeIndex load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MazeIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Maps the index stored in the given file if it is current for the given maze,
+     * or otherwise builds a fresh one and writes it to that file for next time.
+     *
+     * @param file    Where the index for this maze is kept.
+     * @param problem The maze the index must describe.
+     * @return An index that is current for the given maze.
+     * @throws IOException if a rebuilt index cannot be written.
+     */
+    public static MazeIndex loadOrBuild(Path file, MazeProblem problem) throws IOException {
+        if (Files.isRegularFile(file)) {
+            try {
+                MazeIndex stored = load(file);
+                if (stored.isCurrent(problem)) {
+                    return stored;
+                }
+            } catch (IOException e) {
+                // Unreadable or outdated format; fall through and rebuild it
+            }
+        }
+        MazeIndex built = build(problem);
+        built.write(file);
+        return built;
+    }
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Writes this index to the given file, replacing any existing contents.
+     *
+     * @param file The destination file.
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer view = data.duplicate();
+            view.clear();
+            while (view.hasRemaining()) {
+                channel.write(view);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Determines whether this index was built from a maze identical to the given
+     * one, by comparing the stored source checksum.
+     *
+     * @param problem The maze to compare against.
+     * @return true if the index describes the given maze, false if it is stale.
+     */
+    public boolean isCurrent(MazeProblem problem) {
+        return problem.getRows() == rows && problem.getCols() == cols && checksum(problem) == checksum();
+    }
+
+    /**
+     * @return The checksum of the maze this index was built from.
+     */
+    public long checksum() {
+        return data.getLong(8);
+    }
+
+    /**
+     * @return The number of rows in the indexed maze.
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * @return The number of columns in the indexed maze.
+     */
+    public int cols() {
+        return cols;
+    }
+
+    /**
+     * @return The row-major cell of the initial state, or -1 if there is none.
+     */
+    public int initialCell() {
+        return data.getInt(24);
+    }
+
+    /**
+     * @return The number of keys in the indexed maze.
+     */
+    public int keyCount() {
+        return keyCount;
+    }
+
+    /**
+     * Returns the cell of the k-th key, keys being ordered by their key tile.
+     *
+     * @param k Index of the key.
+     * @return The row-major cell of that key.
+     */
+    public int keyCell(int k) {
+        return data.getInt(HEADER_BYTES + 4 * k);
+    }
+
+    /**
+     * Returns the tile stored in the packed grid at the given cell.
+     *
+     * @param cell Row-major cell index.
+     * @return The tile character at that cell.
+     */
+    public char tile(int cell) {
+        return (char) data.get(gridOffset + cell);
+    }
+
+    /**
+     * Returns the connected-component label of the given cell; two cells share a
+     * label exactly when they are joined by open tiles. Labels ignore the
+     * direction of one-way aisles, so a shared label does not promise that either
+     * cell can reach the other; use distance for that.
+     *
+     * @param cell Row-major cell index.
+     * @return The component label, or -1 for walls.
+     */
+    public int component(int cell) {
+        return data.getInt(componentsOffset + 4 * cell);
+    }
+
+    /**
+     * Returns the cheapest cost of travelling from the given cell to the k-th key.
+     *
+     * @param k    Index of the key.
+     * @param cell Row-major cell index to travel from.
+     * @return The travel cost, or DistanceField.UNREACHABLE if there is no path.
+     */
+    public int distance(int k, int cell) {
+        return data.getInt(distancesOffset + 4 * (k * cells + cell));
+    }
+
+    // Helpers
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Computes a CRC32 checksum over the given maze's dimensions, tiles, and tile
+     * costs.
+     *
+     * @param problem The maze to checksum.
+     * @return The checksum value.
+     */
+    static long checksum(MazeProblem problem) {
+        CRC32 crc = new CRC32();
+        int rows = problem.getRows(), cols = problem.getCols();
+        crc.update(ByteBuffer.allocate(8).putInt(rows).putInt(cols).array());
+        byte[] line = new byte[2 * cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                char tile = problem.getTile(col, row);
+                line[2 * col] = (byte) tile;
+                line[2 * col + 1] = (byte) (tile == 'X' ? 0 : problem.getCost(col, row));
+            }
+            crc.update(line);
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Labels the connected components of open tiles in the given maze using a
+     * breadth-first flood fill from each unlabelled open cell, treating every
+     * open tile, one-way aisles included, as passable in all four directions.
+     *
+     * @param problem The maze to label.
+     * @return Row-major component labels, -1 for walls.
+     */
+    private static int[] labelComponents(MazeProblem problem) {
+        int rows = problem.getRows(), cols = problem.getCols();
+        int[] labels = new int[rows * cols], queue = new int[rows * cols];
+        Arrays.fill(labels, -1);
+        int nextLabel = 0;
+        for (int start = 0; start < labels.length; start++) {
+            if (labels[start] != -1 || problem.getTile(start % cols, start / cols) == 'X') {
+                continue;
+            }
+            int head = 0, tail = 0;
+            labels[start] = nextLabel;
+            queue[tail++] = start;
+            while (head < tail) {
+                int cell = queue[head++], col = cell % cols, row = cell / cols;
+                for (int d = 0; d < 4; d++) {
+                    int nc = col + MazeProblem.D_COL[d], nr = row + MazeProblem.D_ROW[d];
+                    if (problem.getTile(nc, nr) != 'X' && labels[nr * cols + nc] == -1) {
+                        labels[nr * cols + nc] = nextLabel;
+                        queue[tail++] = nr * cols + nc;
+                    }
+                }
+            }
+            nextLabel++;
+        }
+        return labels;
+    }
+
+}
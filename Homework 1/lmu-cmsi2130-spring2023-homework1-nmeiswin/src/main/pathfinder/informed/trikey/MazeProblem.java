@@ -12,12 +12,24 @@ public class MazeProblem {
     // Fields
     // -----------------------------------------------------------------------------
     private String[] maze;
-    private int rows, cols;
+    private int[][] costs;
+    private int rows, cols, minCost;
     private final MazeState INITIAL_STATE;
     private final Set<MazeState> KEY_PIECES;
     private static final Map<String, MazeState> TRANS_MAP = createTransitions();
     private static final Set<String> KEY_TILES = new HashSet<>(Arrays.asList("1", "2", "3"));
 
+    // Direction tables shared by the engines that work on the primitive grid;
+    // index d moves by (D_COL[d], D_ROW[d]) and is spelled ACTIONS[d]
+    static final String[] ACTIONS = { "U", "D", "L", "R" };
+    static final int[] D_COL = { 0, 0, -1, 1 };
+    static final int[] D_ROW = { -1, 1, 0, 0 };
+
+    // One-way aisle tiles, which may only be entered and left by moving in the
+    // direction indexed by their position in this String (U, D, L, R)
+    private static final String ONE_WAY_TILES = "^v<>";
+    private static final int MAX_TERRAIN_COST = 9;
+
     /**
      * @return Creates the transition map that maps String actions to MazeState
      *         offsets, of the format: { "U": (0, -1), "D": (0, +1), "L": (-1, 0),
@@ -43,17 +55,37 @@ public class MazeProblem {
      * @param maze An array of Strings in which characters represent the legal maze
      *             entities, including:<br>
      *             'X': A wall, 'I': The initial state, '.': an open spot, 'M': A
-     *             mud tile, '1', '2', '3': The three key pieces For example, a
-     *             valid maze might look like:
+     *             mud tile, '1', '2', '3': The three key pieces, '^', 'v', '<',
+     *             '>': One-way aisles that can only be entered and left by moving
+     *             up, down, left, and right respectively. For example, a valid
+     *             maze might look like:
      * 
      *             <pre>
      *             String[] maze = { "XXXXXXX", "X..M..X", "XIX1X.X", "XX2X..X", "X3....X", "XXXXXXX" };
      *             </pre>
      */
     public MazeProblem(String[] maze) {
+        this(maze, null);
+    }
+
+    /**
+     * Constructs a new MazeProblem from the given maze and terrain costs, in which
+     * entering each open tile costs the amount given for it in the cost grid
+     * (rather than 3 for mud and 1 otherwise).
+     * 
+     * @param maze  An array of Strings in which characters represent the legal
+     *              maze entities, as in {@link #MazeProblem(String[])}.
+     * @param costs The cost of entering each tile, indexed [row][col], from 1 to 9
+     *              for every open tile (ignored for walls); or null to use the
+     *              default mud costs.
+     * @throws IllegalArgumentException if the maze or costs are invalid
+     */
+    public MazeProblem(String[] maze, int[][] costs) {
         this.maze = maze;
+        this.costs = costs;
         this.rows = maze.length;
         this.cols = (rows == 0) ? 0 : maze[0].length();
+        this.minCost = MAX_TERRAIN_COST;
         MazeState foundInitial = null;
         Set<MazeState> keys = new HashSet<>();
 
@@ -74,16 +106,42 @@ public class MazeProblem {
                 case '.':
                 case 'X':
                 case 'M':
+                case '^':
+                case 'v':
+                case '<':
+                case '>':
                     break;
                 default:
                     throw new IllegalArgumentException("Maze formatted invalidly");
                 }
+                if (cell != 'X') {
+                    minCost = Math.min(minCost, getCost(col, row));
+                }
             }
         }
         INITIAL_STATE = foundInitial;
         KEY_PIECES = keys;
     }
 
+    /**
+     * Constructs a MazeProblem whose grid is not held as Strings, for subclasses
+     * that supply their tiles and costs by overriding {@link #getTile(int, int)}
+     * and {@link #getCost(int, int)}, e.g., from storage larger than memory.
+     * 
+     * @param rows    The maze height.
+     * @param cols    The maze width.
+     * @param initial The initial state.
+     * @param keys    The key pieces, each carrying its key tile.
+     * @param minCost The least cost of entering any open tile.
+     */
+    protected MazeProblem(int rows, int cols, MazeState initial, Set<MazeState> keys, int minCost) {
+        this.rows = rows;
+        this.cols = cols;
+        this.minCost = minCost;
+        INITIAL_STATE = initial;
+        KEY_PIECES = keys;
+    }
+
     // Methods
     // -----------------------------------------------------------------------------
 
@@ -124,12 +182,100 @@ public class MazeProblem {
      * @return The cost associated with moving into the given state.
      */
     public int getCost(MazeState state) {
-        switch (maze[state.row()].charAt(state.col())) {
-        case 'M':
-            return 3;
-        default:
-            return 1;
+        return getCost(state.col(), state.row());
+    }
+
+    // Grid Primitives
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Returns the number of rows in this maze.
+     * 
+     * @return The maze height.
+     */
+    public int getRows() {
+        return this.rows;
+    }
+
+    /**
+     * Returns the number of columns in this maze.
+     * 
+     * @return The maze width.
+     */
+    public int getCols() {
+        return this.cols;
+    }
+
+    /**
+     * Returns the tile character at the given position, treating anything outside
+     * of the maze's bounds as a wall.
+     * 
+     * @param col Column of the tile.
+     * @param row Row of the tile.
+     * @return The tile character, e.g., 'X', '.', 'M', '1'.
+     */
+    public char getTile(int col, int row) {
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            return 'X';
+        }
+        return maze[row].charAt(col);
+    }
+
+    /**
+     * Returns the cost associated with entering the tile at the given position;
+     * primitive counterpart of {@link #getCost(MazeState)}.
+     * 
+     * @param col Column of the tile.
+     * @param row Row of the tile.
+     * @return The cost associated with moving into that tile.
+     */
+    public int getCost(int col, int row) {
+        if (costs == null) {
+            return getTile(col, row) == 'M' ? 3 : 1;
+        }
+        if (row >= costs.length || col >= costs[row].length || costs[row][col] < 1
+                || costs[row][col] > MAX_TERRAIN_COST) {
+            throw new IllegalArgumentException("Terrain cost missing or out of range at (" + col + ", " + row + ")");
         }
+        return costs[row][col];
+    }
+
+    /**
+     * Returns the cheapest cost of entering any open tile in this maze, so that
+     * heuristics counting moves can scale by it and remain admissible.
+     * 
+     * @return The least tile cost, at least 1.
+     */
+    public int getMinCost() {
+        return minCost;
+    }
+
+    /**
+     * Determines whether moving from the given position in direction d (an index
+     * into U, D, L, R) lands on an open tile inside the maze, without leaving or
+     * entering a one-way aisle against its direction.
+     * 
+     * @param col Column moved from.
+     * @param row Row moved from.
+     * @param d   Direction index, 0-3 for U, D, L, R respectively.
+     * @return true if the move is legal, false otherwise.
+     */
+    public boolean canMove(int col, int row, int d) {
+        char from = getTile(col, row), to = getTile(col + D_COL[d], row + D_ROW[d]);
+        int fromWay = ONE_WAY_TILES.indexOf(from), toWay = ONE_WAY_TILES.indexOf(to);
+        return to != 'X' && (fromWay < 0 || fromWay == d) && (toWay < 0 || toWay == d);
+    }
+
+    /**
+     * Returns the key pieces of this maze ordered by their key tile, so that
+     * index-based engines can refer to the i-th key consistently.
+     * 
+     * @return The key MazeStates sorted by key piece.
+     */
+    public List<MazeState> getOrderedKeys() {
+        List<MazeState> ordered = new ArrayList<>(KEY_PIECES);
+        ordered.sort(Comparator.comparing(MazeState::keyPiece));
+        return ordered;
     }
 
     /**
@@ -147,20 +293,15 @@ public class MazeProblem {
         // the MazeStates that they result in from state
         Map<String, MazeState> result = new HashMap<>();
 
-        // For each of the possible directions (stored in TRANS_MAP), test
-        // to see if it is a valid transition
-        for (Map.Entry<String, MazeState> action : TRANS_MAP.entrySet()) {
-            MazeState actionMod = action.getValue(), newState = new MazeState(state.col(), state.row(), null);
-            newState = newState.add(actionMod);
-            String tile = "" + this.maze[newState.row()].charAt(newState.col());
-            String keyState = (KEY_TILES.contains(tile)) ? tile : null;
-
-            // If the given state *is* a valid transition (i.e., within
-            // map bounds and no wall at the position)...
-            if (newState.row() >= 0 && newState.row() < rows && newState.col() >= 0 && newState.col() < cols
-                    && maze[newState.row()].charAt(newState.col()) != 'X') {
-                // ...then add it to the result!
-                result.put(action.getKey(), new MazeState(newState.col(), newState.row(), keyState));
+        // For each of the possible directions, test to see if it is a valid
+        // transition (i.e., within map bounds, no wall at the position, and not
+        // against a one-way aisle)...
+        for (int d = 0; d < ACTIONS.length; d++) {
+            if (canMove(state.col(), state.row(), d)) {
+                // ...and if so, add it to the result!
+                int col = state.col() + D_COL[d], row = state.row() + D_ROW[d];
+                String tile = "" + getTile(col, row);
+                result.put(ACTIONS[d], new MazeState(col, row, KEY_TILES.contains(tile) ? tile : null));
             }
         }
         return result;
@@ -194,12 +335,13 @@ public class MazeProblem {
         // in
         // a legal position in this maze
         for (String action : possibleSoln) {
-            MazeState actionMod = TRANS_MAP.get(action);
-            movingState = movingState.add(actionMod);
-            String tile = "" + maze[movingState.row()].charAt(movingState.col());
-            if (tile.equals("X")) {
+            int dir = Arrays.asList(ACTIONS).indexOf(action);
+            if (dir == -1 || !canMove(movingState.col(), movingState.row(), dir)) {
                 return result;
             }
+            MazeState actionMod = TRANS_MAP.get(action);
+            movingState = movingState.add(actionMod);
+            String tile = "" + getTile(movingState.col(), movingState.row());
             if (KEY_TILES.contains(tile)) {
                 collectedKeys.add(tile);
             }
@@ -0,0 +1,281 @@
+package main.pathfinder.informed.trikey;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Local maze-solving service that accepts mazes over a loopback socket and
+ * solves them with Pathfinder.solve, or another solver. Each connection is handled on its own
+ * (virtual, where the runtime supports them) thread, while the solving itself
+ * runs on a fixed pool of CPU workers behind a bounded queue; once that queue is
+ * full, further requests are turned away immediately rather than piling up.
+ *
+ * <pre>
+ * Protocol (UTF-8 lines, any number of requests per connection):
+ *   request:   the maze's rows, one per line, followed by an empty line
+ *   responses: OK &lt;cost&gt; &lt;latency micros&gt; &lt;actions, e.g. RRDL&gt;
+ *              NONE &lt;latency micros&gt;     (the maze has no solution)
+ *              BUSY                       (the solver queue is full)
+ *              ERROR &lt;message&gt;            (the maze is malformed or too large)
+ * </pre>
+ *
+ * A maze must hold an initial tile and each key tile once, and at most MAX_ROWS
+ * rows of MAX_COLS tiles; the rest of a larger one is read but not kept.
+ *
+ * Latency is measured from a request being read to its response being ready,
+ * so it includes any time spent waiting in the queue.
+ */
+public class MazeService implements AutoCloseable {
+
+    // Constants
+    // -----------------------------------------------------------------------------
+    public static final int MAX_ROWS = 1 << 10, MAX_COLS = 1 << 10;
+
+    // Fields
+    // -----------------------------------------------------------------------------
+    private final ServerSocket server;
+    private final ExecutorService connections;
+    private final ThreadPoolExecutor solvers;
+    private final Function<MazeProblem, List<String>> solver;
+    private final AtomicLong served = new AtomicLong(), rejected = new AtomicLong(),
+            totalLatencyMicros = new AtomicLong();
+    private volatile boolean running = true;
+
+    // Constructors
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Starts a new MazeService listening on the loopback interface that solves
+     * mazes with Pathfinder.solve.
+     *
+     * @param port          The port to listen on, or 0 for any free port.
+     * @param workers       The number of threads solving mazes.
+     * @param queueCapacity The number of requests that may wait for a worker
+     *                      before more are turned away.
+     * @throws IOException if the port cannot be bound.
+     */
+    public MazeService(int port, int workers, int queueCapacity) throws IOException {
+        this(port, workers, queueCapacity, Pathfinder::solve);
+    }
+
+    /**
+     * Starts a new MazeService listening on the loopback interface that solves
+     * mazes with the given solver.
+     *
+     * @param port          The port to listen on, or 0 for any free port.
+     * @param workers       The number of threads solving mazes.
+     * @param queueCapacity The number of requests that may wait for a worker
+     *                      before more are turned away.
+     * @param solver        The solver, returning a maze's actions or null if it
+     *                      has no solution; called on several threads at once.
+     * @throws IOException if the port cannot be bound.
+     */
+    public MazeService(int port, int workers, int queueCapacity, Function<MazeProblem, List<String>> solver)
+            throws IOException {
+        this.solver = Objects.requireNonNull(solver);
+        this.server = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        this.connections = newConnectionExecutor();
+        this.solvers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.AbortPolicy());
+        Thread acceptor = new Thread(this::acceptLoop, "maze-service-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * @return The port this service is listening on.
+     */
+    public int port() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return The number of requests answered with a solution or NONE.
+     */
+    public long served() {
+        return served.get();
+    }
+
+    /**
+     * @return The number of requests turned away as BUSY.
+     */
+    public long rejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return The mean latency of served requests in microseconds, or 0 if none
+     *         have been served.
+     */
+    public long meanLatencyMicros() {
+        long count = served.get();
+        return count == 0 ? 0 : totalLatencyMicros.get() / count;
+    }
+
+    /**
+     * Stops accepting connections and shuts down the service's threads.
+     *
+     * @throws IOException if the server socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        server.close();
+        connections.shutdownNow();
+        solvers.shutdownNow();
+    }
+
+    /**
+     * Accepts connections until closed, handing each to the connection executor.
+     */
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = server.accept();
+                connections.execute(() -> handle(socket));
+            } catch (IOException | RejectedExecutionException e) {
+                // Closed while accepting; the loop ends once running is false
+            }
+        }
+    }
+
+    /**
+     * Serves each request on the given connection in turn until it is closed.
+     *
+     * @param socket The client connection.
+     */
+    private void handle(Socket socket) {
+        try (socket;
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                Writer out = new BufferedWriter(
+                        new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            List<String> rows = new ArrayList<>();
+            boolean tooLarge = false;
+            for (String line = readLine(in); line != null; line = readLine(in)) {
+                if (!line.isEmpty()) {
+                    // A maze found too large is read to its end, but no more of it kept
+                    tooLarge |= rows.size() == MAX_ROWS || line.length() > MAX_COLS;
+                    if (tooLarge) {
+                        rows.clear();
+                    } else {
+                        rows.add(line);
+                    }
+                    continue;
+                }
+                out.write((tooLarge ? "ERROR Maze too large" : respond(rows.toArray(new String[0]))) + "\n");
+                out.flush();
+                rows.clear();
+                tooLarge = false;
+            }
+        } catch (IOException e) {
+            // Client went away; nothing left to answer
+        }
+    }
+
+    /**
+     * Solves one maze on the worker pool, producing its protocol response.
+     *
+     * @param maze The maze's rows.
+     * @return The response line.
+     */
+    private String respond(String[] maze) {
+        long start = System.nanoTime();
+        Future<List<String>> pending;
+        MazeProblem problem;
+        try {
+            problem = new MazeProblem(maze);
+            if (!wellFormed(problem)) {
+                return "ERROR Maze formatted invalidly";
+            }
+            pending = solvers.submit(() -> solver.apply(problem));
+        } catch (IllegalArgumentException | StringIndexOutOfBoundsException e) {
+            return "ERROR Maze formatted invalidly";
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            return "BUSY";
+        }
+        try {
+            List<String> solution = pending.get();
+            long micros = (System.nanoTime() - start) / 1000;
+            served.incrementAndGet();
+            totalLatencyMicros.addAndGet(micros);
+            if (solution == null) {
+                return "NONE " + micros;
+            }
+            return "OK " + problem.testSolution(solution)[1] + " " + micros + " " + String.join("", solution);
+        } catch (ExecutionException e) {
+            return "ERROR " + e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "ERROR Interrupted";
+        }
+    }
+
+    /**
+     * Reads one line from the given reader without its terminator, keeping no more
+     * than one character past MAX_COLS of it, so that a longer line is known to be
+     * too long without being held.
+     *
+     * @param in The reader.
+     * @return The line, cut short if too long, or null at the end of the stream.
+     * @throws IOException if the reader fails.
+     */
+    private static String readLine(Reader in) throws IOException {
+        int c = in.read();
+        if (c == -1) {
+            return null;
+        }
+        StringBuilder line = new StringBuilder();
+        for (; c != -1 && c != '\n'; c = in.read()) {
+            if (c != '\r' && line.length() <= MAX_COLS) {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * Determines whether the given maze has the initial tile and the one of each
+     * key tile that a solver needs, which MazeProblem does not itself require.
+     *
+     * @param problem The maze.
+     * @return true if the maze can be searched, false otherwise.
+     */
+    private static boolean wellFormed(MazeProblem problem) {
+        Set<String> keyPieces = new HashSet<>();
+        for (MazeState key : problem.getKeyStates()) {
+            keyPieces.add(key.keyPiece());
+        }
+        return problem.getInitial() != null && problem.getKeyStates().size() == keyPieces.size()
+                && keyPieces.equals(problem.getKeyTiles());
+    }
+
+    /**
+     * Creates the executor that runs connection handlers: a virtual thread per
+     * connection on runtimes that support them, or otherwise a cached pool of
+     * platform threads.
+     *
+     * @return The connection executor.
+     */
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "maze-service-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+}
@@ -0,0 +1,291 @@
+package main.pathfinder.informed.trikey;
+
+import java.util.*;
+
+/**
+ * Cooperative multi-agent planner for many workers sharing one maze, each with
+ * its own start position and set of keys to collect. Agents are planned one at a
+ * time in priority order with a space-time A* search, and every planned route is
+ * entered into a reservation table so that later agents route around it: no two
+ * agents ever occupy the same tile at the same time step, nor swap tiles in a
+ * single step, and an agent that has finished waits on its final tile for good.
+ * <br>
+ * Each time step an agent either moves (paying the cost of the tile entered, as
+ * in the MazeProblem) or waits in place (the "W" action, costing 1).
+ */
+public class MultiAgentPlanner {
+
+    /**
+     * The action of an agent staying where it is for one time step.
+     */
+    public static final String WAIT = "W";
+
+    // Direction index of the wait action, following U, D, L, R
+    private static final int WAIT_ACTION = 4;
+    private static final int MAX_AGENT_KEYS = 8;
+    // Expansions between checks of the time budget
+    private static final int BUDGET_CHECK_INTERVAL = 1024;
+
+    /**
+     * A worker in the maze: where it starts and which keys it must collect.
+     */
+    public static class Agent {
+
+        private final MazeState start;
+        private final List<MazeState> keys;
+
+        /**
+         * Constructs a new Agent.
+         *
+         * @param start The agent's starting position.
+         * @param keys  The positions the agent must visit, at most 8.
+         * @throws IllegalArgumentException if the agent has more than 8 keys
+         */
+        public Agent(MazeState start, Collection<MazeState> keys) {
+            if (keys.size() > MAX_AGENT_KEYS) {
+                throw new IllegalArgumentException("An agent may have at most " + MAX_AGENT_KEYS + " keys");
+            }
+            this.start = start;
+            this.keys = new ArrayList<>(keys);
+        }
+
+        /**
+         * @return The agent's starting position.
+         */
+        public MazeState start() {
+            return start;
+        }
+
+        /**
+         * @return The positions the agent must visit.
+         */
+        public List<MazeState> keys() {
+            return keys;
+        }
+
+    }
+
+    // Fields
+    // -----------------------------------------------------------------------------
+    private final MazeProblem problem;
+    private final int cols, cells;
+    // Reserved (time, cell) vertices and (time, cell, direction) edges, the time
+    // being that at which the tile is occupied or the move begins, packed into
+    // longs and held in primitive sets, since every expansion probes them
+    private final LongSet vertices = new LongSet(1024), edges = new LongSet(1024);
+    // Per cell: the last time step at which it is reserved, and the time from
+    // which a finished agent occupies it forever
+    private final int[] lastReserved, parkedFrom;
+    private int horizon;
+
+    /**
+     * Constructs a planner with an empty reservation table for the given maze.
+     */
+    private MultiAgentPlanner(MazeProblem problem) {
+        this.problem = problem;
+        this.cols = problem.getCols();
+        this.cells = problem.getRows() * cols;
+        this.lastReserved = new int[cells];
+        this.parkedFrom = new int[cells];
+        Arrays.fill(lastReserved, -1);
+        Arrays.fill(parkedFrom, Integer.MAX_VALUE);
+    }
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Plans collision-free routes for the given agents, in order of priority.
+     * Initial and key tiles of the maze itself are irrelevant; only its walls,
+     * aisles, and costs are used.
+     *
+     * @param problem          The maze shared by the agents.
+     * @param agents           The agents, highest priority first.
+     * @param timeBudgetMillis The time allowed for planning every agent.
+     * @return Each agent's route as a list of actions ("U", "D", "L", "R", or
+     *         "W"), in the same order as agents; an entry is null if that agent
+     *         could not be routed around the agents before it, or if the time
+     *         budget ran out before it was planned.
+     */
+    public static List<List<String>> plan(MazeProblem problem, List<Agent> agents, long timeBudgetMillis) {
+        long deadline = System.nanoTime() + timeBudgetMillis * 1_000_000;
+        MultiAgentPlanner planner = new MultiAgentPlanner(problem);
+        // Unplanned agents hold their starting tiles until they get to move
+        for (Agent agent : agents) {
+            planner.reserve(agent.start().row() * planner.cols + agent.start().col(), 0);
+        }
+        List<List<String>> routes = new ArrayList<>();
+        for (Agent agent : agents) {
+            List<String> route = (System.nanoTime() < deadline) ? planner.route(agent, deadline) : null;
+            routes.add(route);
+            if (route != null) {
+                planner.reserveRoute(agent, route);
+            }
+        }
+        return routes;
+    }
+
+    /**
+     * Space-time A* search for a single agent that avoids every reservation,
+     * ending once all of its keys are collected on a tile that it can then occupy
+     * forever.
+     *
+     * @return The agent's route, or null if none exists or the deadline passes.
+     */
+    private List<String> route(Agent agent, long deadline) {
+        int[] keyCells = agent.keys().stream().mapToInt(k -> k.row() * cols + k.col()).distinct().toArray();
+        // Exact cost-to-go for this agent alone, which makes a perfect heuristic
+        // until other agents get in its way; each of its layers covers the whole
+        // maze, so the deadline is checked between them
+        int[][] costToGo = MultiStartSolver.solveLayers(problem, keyCells, deadline);
+        if (costToGo == null) {
+            return null;
+        }
+        int full = (1 << keyCells.length) - 1, start = agent.start().row() * cols + agent.start().col();
+        int startMask = 0;
+        for (int k = 0; k < keyCells.length; k++) {
+            startMask |= (keyCells[k] == start) ? 1 << k : 0;
+        }
+        if (costToGo[startMask][start] == DistanceField.UNREACHABLE) {
+            return null;
+        }
+
+        Nodes nodes = new Nodes();
+        LongHeap frontier = new LongHeap(1024);
+        LongSet closed = new LongSet(1024);
+        int root = nodes.add(start, startMask, 0, 0, -1, -1);
+        frontier.add(LongHeap.pack(costToGo[startMask][start], root));
+        for (int expansions = 1; !frontier.isEmpty(); expansions++) {
+            if (expansions % BUDGET_CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                return null;
+            }
+            int node = (int) frontier.remove(), cell = nodes.cell[node], mask = nodes.mask[node],
+                    t = nodes.time[node];
+            // Past the last reservation, time no longer distinguishes states
+            long key = ((long) Math.min(t, horizon + 1) << 40) | ((long) mask << 32) | cell;
+            if (!closed.add(key)) {
+                continue;
+            }
+            if (mask == full && lastReserved[cell] < t + 1 && parkedFrom[cell] == Integer.MAX_VALUE) {
+                return nodes.trace(node);
+            }
+            int col = cell % cols, row = cell / cols;
+            for (int a = 0; a <= WAIT_ACTION; a++) {
+                int next = cell, cost = 1;
+                if (a != WAIT_ACTION) {
+                    if (!problem.canMove(col, row, a)) {
+                        continue;
+                    }
+                    next = (row + MazeProblem.D_ROW[a]) * cols + col + MazeProblem.D_COL[a];
+                    cost = problem.getCost(next % cols, next / cols);
+                }
+                if (isReserved(next, t + 1) || (a != WAIT_ACTION && isSwap(next, a, t))) {
+                    continue;
+                }
+                int nextMask = mask;
+                for (int k = 0; k < keyCells.length; k++) {
+                    nextMask |= (keyCells[k] == next) ? 1 << k : 0;
+                }
+                if (costToGo[nextMask][next] == DistanceField.UNREACHABLE) {
+                    continue;
+                }
+                int g = nodes.g[node] + cost, child = nodes.add(next, nextMask, t + 1, g, node, a);
+                frontier.add(LongHeap.pack(g + costToGo[nextMask][next], child));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Whether or not the given cell is occupied at time t.
+     */
+    private boolean isReserved(int cell, int t) {
+        return t >= parkedFrom[cell] || (t <= lastReserved[cell] && vertices.contains((long) t * cells + cell));
+    }
+
+    /**
+     * @return Whether or not moving onto next in direction d at time t would swap
+     *         places with an agent leaving next by the opposite move.
+     */
+    private boolean isSwap(int next, int d, int t) {
+        return edges.contains(edgeKey(t, next, d ^ 1));
+    }
+
+    /**
+     * Reserves the given cell at time t.
+     */
+    private void reserve(int cell, int t) {
+        vertices.add((long) t * cells + cell);
+        lastReserved[cell] = Math.max(lastReserved[cell], t);
+        horizon = Math.max(horizon, t);
+    }
+
+    /**
+     * Reserves every tile and move along an agent's planned route, parking it on
+     * its final tile once the route ends.
+     */
+    private void reserveRoute(Agent agent, List<String> route) {
+        int cell = agent.start().row() * cols + agent.start().col(), t = 0;
+        for (String action : route) {
+            int d = Arrays.asList(MazeProblem.ACTIONS).indexOf(action);
+            if (d >= 0) {
+                edges.add(edgeKey(t, cell, d));
+                cell += MazeProblem.D_ROW[d] * cols + MazeProblem.D_COL[d];
+            }
+            reserve(cell, ++t);
+        }
+        parkedFrom[cell] = t;
+    }
+
+    /**
+     * Packs a move from cell in direction d beginning at time t into a key.
+     */
+    private long edgeKey(int t, int cell, int d) {
+        return ((long) t * cells + cell) * 4 + d;
+    }
+
+    /**
+     * Growable, array-backed store of space-time search nodes addressed by id.
+     */
+    private static class Nodes {
+
+        int[] cell = new int[1024], mask = new int[1024], time = new int[1024], g = new int[1024],
+                parent = new int[1024], action = new int[1024];
+        int size;
+
+        /**
+         * Adds a node, returning its id.
+         */
+        int add(int cell, int mask, int time, int g, int parent, int action) {
+            if (size == this.cell.length) {
+                int capacity = size * 2;
+                this.cell = Arrays.copyOf(this.cell, capacity);
+                this.mask = Arrays.copyOf(this.mask, capacity);
+                this.time = Arrays.copyOf(this.time, capacity);
+                this.g = Arrays.copyOf(this.g, capacity);
+                this.parent = Arrays.copyOf(this.parent, capacity);
+                this.action = Arrays.copyOf(this.action, capacity);
+            }
+            this.cell[size] = cell;
+            this.mask[size] = mask;
+            this.time[size] = time;
+            this.g[size] = g;
+            this.parent[size] = parent;
+            this.action[size] = action;
+            return size++;
+        }
+
+        /**
+         * Returns the actions that lead from the root to the given node.
+         */
+        List<String> trace(int node) {
+            LinkedList<String> actions = new LinkedList<>();
+            for (; parent[node] >= 0; node = parent[node]) {
+                actions.addFirst(action[node] == WAIT_ACTION ? WAIT : MazeProblem.ACTIONS[action[node]]);
+            }
+            return new ArrayList<>(actions);
+        }
+
+    }
+
+}
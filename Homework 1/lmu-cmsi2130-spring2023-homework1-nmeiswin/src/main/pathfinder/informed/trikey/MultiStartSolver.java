@@ -0,0 +1,167 @@
+package main.pathfinder.informed.trikey;
+
+import java.util.*;
+
+/**
+ * Many-start query engine that computes, for every open cell of a maze at once,
+ * the optimal cost of collecting all of the keys when starting from that cell.
+ * Equivalent to calling Pathfinder.solve once per start cell, but runs as a
+ * backward dynamic program over (cell, collected-key-subset) layers: the layer
+ * in which every key is collected costs nothing, and each smaller subset's layer
+ * is a multi-source Dijkstra seeded from the moves that collect a new key.
+ */
+public class MultiStartSolver {
+
+    /**
+     * Computes the optimal key-collection cost from every cell in the maze. As in
+     * MazeProblem.testSolution, a key is only collected by moving onto it, so
+     * starting on a key does not count as having collected it.
+     *
+     * @param problem The maze whose keys are to be collected.
+     * @return Row-major array (<code>row * cols + col</code>) of optimal costs,
+     *         DistanceField.UNREACHABLE for walls and for cells from which the keys
+     *         cannot all be collected.
+     */
+    public static int[] solveAll(MazeProblem problem) {
+        return solveLayers(problem)[0];
+    }
+
+    /**
+     * Computes every (collected-key-subset, cell) layer of the backward dynamic
+     * program, where subsets are bitmasks over MazeProblem.getOrderedKeys().
+     *
+     * @param problem The maze whose keys are to be collected.
+     * @return layers[mask][cell] holding the optimal cost of collecting the keys
+     *         missing from mask when standing at cell having collected mask.
+     */
+    static int[][] solveLayers(MazeProblem problem) {
+        int cols = problem.getCols();
+        return solveLayers(problem, problem.getOrderedKeys().stream()
+                .mapToInt(key -> key.row() * cols + key.col()).toArray());
+    }
+
+    /**
+     * Computes every layer of the backward dynamic program for an arbitrary set of
+     * key cells in place of the maze's own keys.
+     *
+     * @param problem  The maze to travel through.
+     * @param keyCells Distinct row-major cells of the keys, bit k of each mask
+     *                 standing for keyCells[k].
+     * @return layers[mask][cell] as for solveLayers(MazeProblem).
+     */
+    static int[][] solveLayers(MazeProblem problem, int[] keyCells) {
+        return solveLayers(problem, keyCells, 0);
+    }
+
+    /**
+     * Computes every layer of the backward dynamic program for the given key
+     * cells as above, giving up between layers once the given deadline passes.
+     *
+     * @param problem  The maze to travel through.
+     * @param keyCells Distinct row-major cells of the keys.
+     * @param deadline The System.nanoTime() by which to finish, 0 for none.
+     * @return layers[mask][cell] as for solveLayers(MazeProblem), or null if the
+     *         deadline passed first.
+     */
+    static int[][] solveLayers(MazeProblem problem, int[] keyCells, long deadline) {
+        int rows = problem.getRows(), cols = problem.getCols(), cells = rows * cols;
+        int full = (1 << keyCells.length) - 1;
+        int[] keyAt = new int[cells];
+        Arrays.fill(keyAt, -1);
+        for (int k = 0; k < keyCells.length; k++) {
+            keyAt[keyCells[k]] = k;
+        }
+
+        int[][] layers = new int[full + 1][];
+        layers[full] = new int[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            layers[full][cell] = isOpen(problem, cell, cols) ? 0 : DistanceField.UNREACHABLE;
+        }
+
+        // Supersets of a mask are numerically larger, so descending order visits
+        // every layer after all of the layers it can move into
+        LongHeap frontier = new LongHeap(cells);
+        for (int mask = full - 1; mask >= 0; mask--) {
+            // Each layer covers the whole maze, so the clock is checked before each
+            if (deadline != 0 && System.nanoTime() > deadline) {
+                return null;
+            }
+            int[] layer = new int[cells];
+            Arrays.fill(layer, DistanceField.UNREACHABLE);
+            frontier.clear();
+            seedLayer(problem, mask, keyAt, layers, layer, frontier);
+            relaxLayer(problem, mask, keyAt, layer, frontier);
+            layers[mask] = layer;
+        }
+        return layers;
+    }
+
+    /**
+     * Seeds a layer with the cost of every move that collects a key missing from
+     * its mask, which lands in the already-solved layer of the larger mask.
+     */
+    private static void seedLayer(MazeProblem problem, int mask, int[] keyAt, int[][] layers, int[] layer,
+            LongHeap frontier) {
+        int cols = problem.getCols();
+        for (int cell = 0; cell < layer.length; cell++) {
+            int col = cell % cols, row = cell / cols;
+            if (!isOpen(problem, cell, cols)) {
+                continue;
+            }
+            for (int d = 0; d < 4; d++) {
+                if (!problem.canMove(col, row, d)) {
+                    continue;
+                }
+                int nc = col + MazeProblem.D_COL[d], nr = row + MazeProblem.D_ROW[d], next = nr * cols + nc;
+                int k = keyAt[next];
+                if (k < 0 || (mask & (1 << k)) != 0) {
+                    continue;
+                }
+                int rest = layers[mask | (1 << k)][next];
+                if (rest != DistanceField.UNREACHABLE && rest + problem.getCost(nc, nr) < layer[cell]) {
+                    layer[cell] = rest + problem.getCost(nc, nr);
+                }
+            }
+            if (layer[cell] != DistanceField.UNREACHABLE) {
+                frontier.add(LongHeap.pack(layer[cell], cell));
+            }
+        }
+    }
+
+    /**
+     * Runs a backward Dijkstra within one layer, relaxing the predecessors of each
+     * settled cell through moves that do not collect a new key.
+     */
+    private static void relaxLayer(MazeProblem problem, int mask, int[] keyAt, int[] layer, LongHeap frontier) {
+        int cols = problem.getCols();
+        while (!frontier.isEmpty()) {
+            long top = frontier.remove();
+            int cell = (int) top, d = (int) (top >>> 32);
+            int k = keyAt[cell];
+            if (d > layer[cell] || (k >= 0 && (mask & (1 << k)) == 0)) {
+                // Stale entry, or entering this cell would leave the layer
+                continue;
+            }
+            int col = cell % cols, row = cell / cols, enter = d + problem.getCost(col, row);
+            for (int dir = 0; dir < 4; dir++) {
+                int pc = col - MazeProblem.D_COL[dir], pr = row - MazeProblem.D_ROW[dir];
+                if (problem.getTile(pc, pr) == 'X' || !problem.canMove(pc, pr, dir)) {
+                    continue;
+                }
+                int pred = pr * cols + pc;
+                if (enter < layer[pred]) {
+                    layer[pred] = enter;
+                    frontier.add(LongHeap.pack(enter, pred));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Whether or not the given row-major cell is an open tile.
+     */
+    private static boolean isOpen(MazeProblem problem, int cell, int cols) {
+        return problem.getTile(cell % cols, cell / cols) != 'X';
+    }
+
+}
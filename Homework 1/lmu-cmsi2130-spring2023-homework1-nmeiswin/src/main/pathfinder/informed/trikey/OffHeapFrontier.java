@@ -0,0 +1,121 @@
+package main.pathfinder.informed.trikey;
+
+/**
+ * Search frontier held off-heap: a binary min-heap of (priority, value) pairs of
+ * longs stored in an OffHeapLongArray, growing by doubling. Must be closed to
+ * release its memory.
+ */
+class OffHeapFrontier implements AutoCloseable {
+
+    private OffHeapLongArray entries;
+    private long size;
+
+    /**
+     * Constructs a new, empty frontier with room for the given number of entries
+     * before it grows.
+     *
+     * @param capacity Initial number of entries.
+     */
+    OffHeapFrontier(long capacity) {
+        entries = new OffHeapLongArray(2 * Math.max(capacity, 16));
+    }
+
+    /**
+     * @return Whether or not the frontier holds no entries.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return The number of entries in the frontier.
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Adds an entry to the frontier.
+     *
+     * @param priority The entry's priority, smaller being removed first.
+     * @param value    The entry's value.
+     */
+    void add(long priority, long value) {
+        if (2 * size == entries.length()) {
+            grow();
+        }
+        long i = size++;
+        while (i > 0) {
+            long parent = (i - 1) >>> 1, parentPriority = entries.get(2 * parent);
+            if (parentPriority <= priority) {
+                break;
+            }
+            move(parent, i);
+            i = parent;
+        }
+        entries.set(2 * i, priority);
+        entries.set(2 * i + 1, value);
+    }
+
+    /**
+     * @return The smallest priority in the frontier.
+     */
+    long peekPriority() {
+        return entries.get(0);
+    }
+
+    /**
+     * Removes the entry with the smallest priority, returning its value.
+     *
+     * @return The removed entry's value.
+     */
+    long remove() {
+        long top = entries.get(1);
+        size--;
+        long lastPriority = entries.get(2 * size), lastValue = entries.get(2 * size + 1);
+        long i = 0, half = size >>> 1;
+        while (i < half) {
+            long child = 2 * i + 1;
+            if (child + 1 < size && entries.get(2 * child + 2) < entries.get(2 * child)) {
+                child++;
+            }
+            if (lastPriority <= entries.get(2 * child)) {
+                break;
+            }
+            move(child, i);
+            i = child;
+        }
+        entries.set(2 * i, lastPriority);
+        entries.set(2 * i + 1, lastValue);
+        return top;
+    }
+
+    /**
+     * Copies the entry at index from to index to.
+     */
+    private void move(long from, long to) {
+        entries.set(2 * to, entries.get(2 * from));
+        entries.set(2 * to + 1, entries.get(2 * from + 1));
+    }
+
+    /**
+     * Doubles the frontier's capacity, freeing the old storage.
+     */
+    private void grow() {
+        OffHeapLongArray larger = new OffHeapLongArray(2 * entries.length());
+        for (long i = 0; i < 2 * size; i++) {
+            larger.set(i, entries.get(i));
+        }
+        entries.close();
+        entries = larger;
+    }
+
+    /**
+     * Releases the frontier's memory.
+     */
+    @Override
+    public void close() {
+        entries.close();
+    }
+
+}
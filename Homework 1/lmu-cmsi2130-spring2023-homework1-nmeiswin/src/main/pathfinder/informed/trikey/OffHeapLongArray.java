@@ -0,0 +1,120 @@
+package main.pathfinder.informed.trikey;
+
+import java.lang.reflect.*;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Fixed-length array of longs held outside of the Java heap in direct buffers,
+ * split into segments so that its length is not limited by a single buffer's
+ * 2GB capacity. Being off-heap, its contents add no work to garbage collection;
+ * its memory is released explicitly by {@link #close()}, after which the array
+ * must not be used.
+ */
+class OffHeapLongArray implements AutoCloseable {
+
+    // Fields
+    // -----------------------------------------------------------------------------
+    private ByteBuffer[] segments;
+    private LongBuffer[] views;
+    private final long length;
+
+    // Constants
+    // -----------------------------------------------------------------------------
+    // 2^24 longs (128MB) per segment
+    private static final int SEGMENT_BITS = 24;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        // Direct buffers are otherwise only freed once collected, so use the
+        // JDK's cleaner hook when available to free them on close
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    // Constructor
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Allocates a new off-heap array of the given length, with every element 0.
+     *
+     * @param length The number of longs in the array.
+     */
+    OffHeapLongArray(long length) {
+        this.length = length;
+        int count = (int) ((length + SEGMENT_MASK) >>> SEGMENT_BITS);
+        segments = new ByteBuffer[count];
+        views = new LongBuffer[count];
+        for (int s = 0; s < count; s++) {
+            long remaining = Math.min(length - ((long) s << SEGMENT_BITS), 1L << SEGMENT_BITS);
+            segments[s] = ByteBuffer.allocateDirect((int) remaining * Long.BYTES);
+            views[s] = segments[s].asLongBuffer();
+        }
+    }
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * @return The number of longs in the array.
+     */
+    long length() {
+        return length;
+    }
+
+    /**
+     * Returns the element at the given index.
+     *
+     * @param i Index of the element.
+     * @return The element's value.
+     */
+    long get(long i) {
+        return views[(int) (i >>> SEGMENT_BITS)].get((int) (i & SEGMENT_MASK));
+    }
+
+    /**
+     * Sets the element at the given index.
+     *
+     * @param i     Index of the element.
+     * @param value The element's new value.
+     */
+    void set(long i, long value) {
+        views[(int) (i >>> SEGMENT_BITS)].put((int) (i & SEGMENT_MASK), value);
+    }
+
+    /**
+     * Releases this array's memory. Idempotent; any later access fails.
+     */
+    @Override
+    public void close() {
+        if (segments == null) {
+            return;
+        }
+        if (INVOKE_CLEANER != null) {
+            for (ByteBuffer segment : segments) {
+                try {
+                    INVOKE_CLEANER.invoke(UNSAFE, segment);
+                } catch (ReflectiveOperationException e) {
+                    // Left for the garbage collector to free instead
+                }
+            }
+        }
+        segments = null;
+        views = null;
+    }
+
+}
@@ -0,0 +1,124 @@
+package main.pathfinder.informed.trikey;
+
+import java.util.*;
+
+/**
+ * A* search for the tri-key problem whose frontier and visited/closed set live
+ * off-heap, for search spaces large enough that per-node Java objects would
+ * dominate memory and garbage collection time. States are packed into longs as
+ * <code>keyMask &lt;&lt; 32 | cell</code> (cells row-major), and each visited
+ * state maps to a long holding its best path cost and how it was reached, so
+ * that no per-node objects are allocated at all. Off-heap memory is released as
+ * soon as the search returns.
+ */
+public class OffHeapSearch {
+
+    // Visited-state values hold g << 32 | flags, where the low two bits are the
+    // direction of the move that reached the state
+    private static final long DIRECTION = 3, COLLECTED = 1 << 2, ROOT = 1 << 3, CLOSED = 1 << 4;
+
+    /**
+     * Finds an optimal solution to the given problem, as with Pathfinder.solve,
+     * holding all search state off-heap.
+     *
+     * @param problem A MazeProblem that specifies the maze, actions, transitions.
+     * @return A List of Strings representing actions that solve the problem of the
+     *         format: ["R", "R", "L", ...], or null if there is no solution.
+     */
+    public static List<String> solve(MazeProblem problem) {
+        MazeState initial = problem.getInitial();
+        if (initial == null) {
+            return null;
+        }
+        int cols = problem.getCols();
+        int[] keyCells = problem.getOrderedKeys().stream().mapToInt(k -> k.row() * cols + k.col()).toArray();
+        int full = (1 << keyCells.length) - 1;
+        long start = initial.row() * cols + initial.col();
+        int minCost = problem.getMinCost();
+
+        try (OffHeapFrontier frontier = new OffHeapFrontier(1 << 12);
+                OffHeapStateTable visited = new OffHeapStateTable(1 << 12)) {
+            visited.put(start, ROOT);
+            frontier.add(priority(heuristic(keyCells, cols, minCost, start), 0), start);
+            while (!frontier.isEmpty()) {
+                long state = frontier.remove(), info = visited.get(state, -1);
+                if ((info & CLOSED) != 0) {
+                    // Superseded duplicate of a state that was already expanded
+                    continue;
+                }
+                visited.put(state, info | CLOSED);
+                int mask = (int) (state >>> 32), cell = (int) state, g = (int) (info >>> 32);
+                if (mask == full) {
+                    return trace(visited, keyCells, cols, state);
+                }
+                int col = cell % cols, row = cell / cols;
+                for (int d = 0; d < 4; d++) {
+                    if (!problem.canMove(col, row, d)) {
+                        continue;
+                    }
+                    int nc = col + MazeProblem.D_COL[d], nr = row + MazeProblem.D_ROW[d], next = nr * cols + nc;
+                    int nextMask = mask | keyBit(keyCells, next), nextG = g + problem.getCost(nc, nr);
+                    long nextState = ((long) nextMask << 32) | next, seen = visited.get(nextState, -1);
+                    if (seen != -1 && (seen >>> 32) <= nextG) {
+                        continue;
+                    }
+                    visited.put(nextState, ((long) nextG << 32) | d | (nextMask != mask ? COLLECTED : 0));
+                    frontier.add(priority(nextG + heuristic(keyCells, cols, minCost, nextState), nextG), nextState);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Packs f and g into a frontier priority that orders by f, breaking ties in
+     * favor of the deeper (larger g) node.
+     */
+    private static long priority(int f, int g) {
+        return ((long) f << 32) | (0xFFFFFFFFL - g);
+    }
+
+    /**
+     * Consistent heuristic: the greatest Manhattan distance to any key not yet
+     * collected in the state, scaled by the cheapest tile cost in the maze.
+     */
+    private static int heuristic(int[] keyCells, int cols, int minCost, long state) {
+        int mask = (int) (state >>> 32), cell = (int) state, h = 0;
+        for (int k = 0; k < keyCells.length; k++) {
+            if ((mask & (1 << k)) == 0) {
+                h = Math.max(h, Math.abs(keyCells[k] % cols - cell % cols) + Math.abs(keyCells[k] / cols - cell / cols));
+            }
+        }
+        return h * minCost;
+    }
+
+    /**
+     * @return The mask bit of the key at the given cell, or 0 if there is none.
+     */
+    private static int keyBit(int[] keyCells, int cell) {
+        for (int k = 0; k < keyCells.length; k++) {
+            if (keyCells[k] == cell) {
+                return 1 << k;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Walks the recorded moves back from the goal state to the root.
+     */
+    private static List<String> trace(OffHeapStateTable visited, int[] keyCells, int cols, long state) {
+        LinkedList<String> actions = new LinkedList<>();
+        for (long info = visited.get(state, -1); (info & ROOT) == 0; info = visited.get(state, -1)) {
+            int d = (int) (info & DIRECTION), mask = (int) (state >>> 32), cell = (int) state;
+            if ((info & COLLECTED) != 0) {
+                mask &= ~keyBit(keyCells, cell);
+            }
+            cell -= MazeProblem.D_ROW[d] * cols + MazeProblem.D_COL[d];
+            actions.addFirst(MazeProblem.ACTIONS[d]);
+            state = ((long) mask << 32) | cell;
+        }
+        return new ArrayList<>(actions);
+    }
+
+}
@@ -0,0 +1,120 @@
+package main.pathfinder.informed.trikey;
+
+/**
+ * Visited/closed set held off-heap: an open-addressing hash table with linear
+ * probing that maps non-negative long states to long values, stored as
+ * interleaved (key, value) slots in an OffHeapLongArray and rehashed into double
+ * the slots once half full. Must be closed to release its memory.
+ */
+class OffHeapStateTable implements AutoCloseable {
+
+    private OffHeapLongArray slots;
+    private long capacity, size;
+
+    // Marks a slot's key as occupied, so that zeroed memory reads as empty
+    private static final long OCCUPIED = 1L << 63;
+
+    /**
+     * Constructs a new, empty table with room for the given number of states
+     * before it grows.
+     *
+     * @param expected Number of states expected.
+     */
+    OffHeapStateTable(long expected) {
+        capacity = Long.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1;
+        slots = new OffHeapLongArray(2 * capacity);
+    }
+
+    /**
+     * @return The number of states in the table.
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Returns the value stored for the given state.
+     *
+     * @param state    A non-negative state.
+     * @param fallback Value to return if the state is absent.
+     * @return The stored value, or fallback if there is none.
+     */
+    long get(long state, long fallback) {
+        long slot = find(state);
+        return slots.get(2 * slot) == 0 ? fallback : slots.get(2 * slot + 1);
+    }
+
+    /**
+     * Stores the given value for the given state, replacing any previous value.
+     *
+     * @param state A non-negative state.
+     * @param value The value to store.
+     */
+    void put(long state, long value) {
+        long slot = find(state);
+        if (slots.get(2 * slot) == 0) {
+            if (2 * (size + 1) > capacity) {
+                rehash();
+                slot = find(state);
+            }
+            slots.set(2 * slot, state | OCCUPIED);
+            size++;
+        }
+        slots.set(2 * slot + 1, value);
+    }
+
+    /**
+     * Returns the slot holding the given state, or the empty slot where it belongs.
+     */
+    private long find(long state) {
+        long mask = capacity - 1, slot = mix(state) & mask, key = state | OCCUPIED;
+        while (true) {
+            long stored = slots.get(2 * slot);
+            if (stored == 0 || stored == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Doubles the table's capacity, reinserting every state and freeing the old
+     * storage.
+     */
+    private void rehash() {
+        OffHeapLongArray old = slots;
+        long oldCapacity = capacity;
+        capacity *= 2;
+        slots = new OffHeapLongArray(2 * capacity);
+        for (long slot = 0; slot < oldCapacity; slot++) {
+            long stored = old.get(2 * slot);
+            if (stored != 0) {
+                long target = find(stored & ~OCCUPIED);
+                slots.set(2 * target, stored);
+                slots.set(2 * target + 1, old.get(2 * slot + 1));
+            }
+        }
+        old.close();
+    }
+
+    /**
+     * Scrambles the bits of a state so that packed coordinates spread evenly over
+     * the table (the MurmurHash3 finalizer). LongSet hashes its keys the same way.
+     */
+    static long mix(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        return x ^ (x >>> 33);
+    }
+
+    /**
+     * Releases the table's memory.
+     */
+    @Override
+    public void close() {
+        slots.close();
+    }
+
+}
@@ -3,8 +3,15 @@ package main.pathfinder.informed.trikey;
 import java.util.*;
 
 /**
- * Maze Pathfinding algorithm that implements a basic, uninformed, breadth-first
- * tree search.
+ * Maze Pathfinding algorithm that finds the cheapest sequence of actions
+ * collecting all three key pieces, with an A* graph search over (tile, keys
+ * collected) states: nodes are ordered by cost so far plus the Manhattan
+ * distance, scaled by the cheapest tile, to the nearest key not yet collected,
+ * and are closed once expanded. A node with a single key left is not expanded
+ * tile by tile; it is completed by its exact final leg to that key, found with
+ * a bidirectional A* search (see BidirectionalSearch) and memoized by the tiles
+ * the leg joins. A TiledMazeProblem is searched without final legs, since the
+ * leg search's per-cell arrays would cover the whole maze.
  */
 public class Pathfinder {
 
@@ -17,219 +24,186 @@ public class Pathfinder {
      * @return A List of Strings representing actions that solve the problem of the
      *         format: ["R", "R", "L", ...]
      */
-    // >> [TN] Make sure to remove code you wrote for testing purposes, like this main method (-0.5)
-    public static void main(String[] args) {
-        
-        String[] maze = {
-            //012345678
-            "XXXXXXXXXXXXXXXXXX",
-            "X.......I.....X.2X",
-            "X.............X..X",
-            "XMMMMMM.......X.MX",
-            "X..1.....MM...X..X",
-            "X..MXX........XX.X",
-            "XXXXM.XXXX..MMX..X",
-            "X3..M............X",
-            "XXXXXXXXXXXXXXXXXX" // 4
-          };      
-            MazeProblem prob = new MazeProblem(maze);
-            
-            List<String> solution = Pathfinder.solve(prob);
-            solution.size();
-            
-            
-
-    }
-
     // >> [TN] Missing the Javadoc comments (-0.5)
     // You also don't need to comment as frequently as you do. In line comments should only be used
     // for dense lines of code that are difficult to parse.
     public static List<String> solve(MazeProblem problem) {
 
-        //Create Priority Queue to sort frontier
-        // >> [TN] It's a bit cleaner to define a compareTo function in STN class
-        PriorityQueue<SearchTreeNode> frontier = new PriorityQueue<SearchTreeNode>(11, new Comparator<SearchTreeNode>() {
+        //frontier ordered by estimated total cost
+        PriorityQueue<SearchTreeNode> frontier = new PriorityQueue<SearchTreeNode>(11,
+                Comparator.comparingInt(node -> node.totalCost));
+        frontier.add(new SearchTreeNode(problem.getInitial(), null, null, 0, 0));
 
-            //Define comparitor for priority Queue
-            @Override
-            public int compare(SearchTreeNode o1, SearchTreeNode o2) {
-                return o1.totalCost-o2.totalCost;
-            }
-            
-        });
-
-        //add initial state to frontier
-        frontier.add(new SearchTreeNode(problem.getInitial(), null, null, 0,0));
-        
-        //obtain set of goals;
+        //the keys belong to this search alone, so concurrent solves never share them
         Set<MazeState> goals = problem.getKeyStates();
 
-        //define goal set for node goal test
-        SearchTreeNode.GOAL_SET = goals;
-
-        //define graveyard
+        //nodes are only closed once expanded, so that a cheaper path found later
+        //to a generated node still gets its turn
         Set<SearchTreeNode> graveyard = new HashSet<SearchTreeNode>();
-        
-        //initial expansion
-        // >> [TN] You shouldn't need more than one new line to separate blocks of code
-        SearchTreeNode currNode = frontier.remove();
-        graveyard.add(currNode);
-
 
-        //initial generation
-        Map<String, MazeState> transitions = problem.getTransitions(currNode.state);
-
-        //iterate through possible transistions
-        for (Map.Entry<String,MazeState> posibleState : transitions.entrySet()) 
-        {
-            //calculate lowest future cost to key states not yet reached
-            int futureCost = Integer.MAX_VALUE;
-            for (MazeState goal : goals) 
-            {
-                // >> [TN] Uneven indentation here -- remember that each code block is indented 4 spaces and
-                // all bracket indents should match their siblings' (-0.25)
-                // This block of code could be a helper method
-                if (!currNode.goalsHit.contains(goal))
-                {
-                int posibleCost = Math.abs((goal.row()-posibleState.getValue().row()))+Math.abs((goal.col()-posibleState.getValue().col()));
-                futureCost = (futureCost > posibleCost)? posibleCost : futureCost;
-                }
-
-
-                
+        //final legs to the last key, shared by every node that reaches the same tile;
+        //the leg search's per-cell arrays are only built once a leg is needed, and
+        //mazes too large for them, or tiled so as not to hold every cell, search
+        //their final legs like the rest
+        boolean legsFit = !(problem instanceof TiledMazeProblem) && BidirectionalSearch.fits(problem);
+        BidirectionalSearch legSearch = null;
+        Map<Long, BidirectionalSearch.Leg> legs = new HashMap<Long, BidirectionalSearch.Leg>();
+
+        while (!frontier.isEmpty()) {
+            SearchTreeNode currNode = frontier.remove();
+            if (currNode.goalsHit.containsAll(goals)) {
+                return trace(currNode);
             }
-
-            //Calculate path cost
-            int pathCost = (currNode.pathCost + problem.getCost(posibleState.getValue()));
-
-            //create temperary node
-            SearchTreeNode prospectNode = new SearchTreeNode(posibleState.getValue(), posibleState.getKey(), currNode, pathCost,pathCost + futureCost);
-            //fill node with goals hit along the path so far
-            prospectNode.goalsHit.addAll(currNode.goalsHit);
-            
-            //check if prospect node is a goal to add it to goals hit along path
-            if (futureCost == 0)
-            {
-                prospectNode.goalsHit.add(posibleState.getValue());
-                //add to frontier if not in graveyard
-                if(!graveyard.contains(prospectNode))
-                {
-                    frontier.add(prospectNode);
-                    graveyard.add(prospectNode);
-                }
-                
+            if (!graveyard.add(currNode)) {
+                continue;
             }
-            else{
-                //add to frontier if not in graveyard
-                if(!graveyard.contains(prospectNode))
-                {
-                    frontier.add(prospectNode);
-                    graveyard.add(prospectNode);
+            if (legsFit && goals.size() - currNode.goalsHit.size() == 1) {
+                if (legSearch == null) {
+                    legSearch = new BidirectionalSearch(problem);
                 }
-                
+                addFinalLeg(problem, goals, currNode, legSearch, legs, frontier);
+            } else {
+                generate(problem, goals, currNode, frontier, graveyard);
             }
-            
         }
+        return null;
+    }
 
-        //Main search loop
-        while(!currNode.goalComplete())
-        {
-            //Check if the problem is impossible
-            if (frontier.isEmpty())
-            {
-                return null;
-            }
-
-            ////////////EXPLORATION/////////////
-
-            //explores node if not in graveyard
-            currNode = frontier.remove();
-            graveyard.add(currNode);
-
-            //goal check
-            if (currNode.goalComplete())
-            {
-                break;
-            }
-
-            ////////////GENERATION/////////////
-            
-            //update transitions
-            transitions = problem.getTransitions(currNode.state);
-
-            //iterate through possible transistions
-        for (Map.Entry<String,MazeState> posibleState : transitions.entrySet()) 
-        {
-            //calculate lowest future cost to key states not yet reached
-            int futureCost = Integer.MAX_VALUE;
-            // >> [TN] The fact that you have this block of code a second time shows that it should be a helper that is called in each place
-            for (MazeState goal : goals) 
-            {
-                if (!currNode.goalsHit.contains(goal))
-                {
-                int posibleCost = Math.abs((goal.row()-posibleState.getValue().row()))+Math.abs((goal.col()-posibleState.getValue().col()));
-                futureCost = (futureCost > posibleCost)? posibleCost : futureCost;
-                }
-                // >> [TN] Three newlines is more than you'll need. Stick to one and be consistent
-
-
-                
-            }
-
-            //Calculate path cost
-            int pathCost = (currNode.pathCost + problem.getCost(posibleState.getValue()));
-
-            //create temperary node
-            SearchTreeNode prospectNode = new SearchTreeNode(posibleState.getValue(), posibleState.getKey(), currNode, pathCost,pathCost + futureCost);
-            //fill node with goals hit along the path so far
+    /**
+     * Adds the children of the given node to the frontier, unless they have
+     * already been expanded.
+     * 
+     * @param problem   The MazeProblem being searched.
+     * @param goals     The keys to collect.
+     * @param currNode  The node being expanded.
+     * @param frontier  The search frontier.
+     * @param graveyard The nodes already expanded.
+     */
+    private static void generate(MazeProblem problem, Set<MazeState> goals, SearchTreeNode currNode,
+            PriorityQueue<SearchTreeNode> frontier, Set<SearchTreeNode> graveyard) {
+        for (Map.Entry<String, MazeState> posibleState : problem.getTransitions(currNode.state).entrySet()) {
+            int futureCost = futureCost(problem, goals, posibleState.getValue(), currNode.goalsHit);
+            int pathCost = currNode.pathCost + problem.getCost(posibleState.getValue());
+            SearchTreeNode prospectNode = new SearchTreeNode(posibleState.getValue(), posibleState.getKey(), currNode,
+                    pathCost, pathCost + futureCost);
             prospectNode.goalsHit.addAll(currNode.goalsHit);
-            
-            //check if prospect node is a goal to add it to goals hit along path
-            if (futureCost == 0)
-            {
+
+            //a future cost of 0 means the prospect node is on a key not yet hit
+            if (futureCost == 0) {
                 prospectNode.goalsHit.add(posibleState.getValue());
-                //add to frontier if not in graveyard
-                if(!graveyard.contains(prospectNode))
-                {
-                    frontier.add(prospectNode);
-                    graveyard.add(prospectNode);
-                }
-                
             }
-            else{
-                //add to frontier if not in graveyard
-                if(!graveyard.contains(prospectNode))
-                {
-                    frontier.add(prospectNode);
-                    graveyard.add(prospectNode);
-                }
-                
+            if (!graveyard.contains(prospectNode)) {
+                frontier.add(prospectNode);
             }
-            
         }
-                //END OF SEARCH LOOP
     }
 
+    /**
+     * Estimates the cost from the given state to the nearest key not yet hit: the
+     * Manhattan distance scaled by the maze's cheapest tile.
+     * 
+     * @param problem  The MazeProblem being searched.
+     * @param goals    The keys to collect.
+     * @param state    The state to estimate from.
+     * @param goalsHit The keys already collected.
+     * @return The admissible estimate.
+     */
+    private static int futureCost(MazeProblem problem, Set<MazeState> goals, MazeState state,
+            Set<MazeState> goalsHit) {
+        int futureCost = Integer.MAX_VALUE;
+        for (MazeState goal : goals) {
+            if (!goalsHit.contains(goal)) {
+                int posibleCost = problem.getMinCost()
+                        * (Math.abs(goal.row() - state.row()) + Math.abs(goal.col() - state.col()));
+                futureCost = Math.min(futureCost, posibleCost);
+            }
+        }
+        return futureCost;
+    }
 
-      
-        
-    List<String> solution = new ArrayList<String>();
+    /**
+     * Completes a node with a single key left by its exact final leg, found with a
+     * bidirectional search, and adds the completed node to the frontier at its
+     * true cost; the node itself is not expanded. Legs are memoized by the tiles
+     * they join.
+     * 
+     * @param problem   The MazeProblem being searched.
+     * @param goals     The keys to collect.
+     * @param currNode  The node missing a single key.
+     * @param legSearch The search used to find new legs.
+     * @param legs      Legs found so far, null where the key is unreachable.
+     * @param frontier  The search frontier.
+     */
+    private static void addFinalLeg(MazeProblem problem, Set<MazeState> goals, SearchTreeNode currNode,
+            BidirectionalSearch legSearch, Map<Long, BidirectionalSearch.Leg> legs,
+            PriorityQueue<SearchTreeNode> frontier) {
+        MazeState lastKey = null;
+        for (MazeState goal : goals) {
+            if (!currNode.goalsHit.contains(goal)) {
+                lastKey = goal;
+            }
+        }
+        int cols = problem.getCols(), cells = problem.getRows() * cols;
+        int from = currNode.state.row() * cols + currNode.state.col(), to = lastKey.row() * cols + lastKey.col();
+        long legKey = (long) from * cells + to;
+        if (!legs.containsKey(legKey)) {
+            legs.put(legKey, legSearch.leg(from, to));
+        }
+        BidirectionalSearch.Leg leg = legs.get(legKey);
+        if (leg == null) {
+            return;
+        }
+        int pathCost = currNode.pathCost + leg.cost;
+        SearchTreeNode completeNode = new SearchTreeNode(lastKey, null, currNode, pathCost, pathCost);
+        completeNode.goalsHit.addAll(goals);
+        completeNode.leg = leg.actions;
+        frontier.add(completeNode);
+    }
 
-        //Back trace steps and create solution array
-        // >> [TN] You have a lot of code here to recover the solution that should be instead
-        // in its own helper method (see CW2 solution) (-0.25)
-        while(currNode.parent != null)
-        {
-            solution.add(0,(currNode.action));
-            currNode = currNode.parent;
-            
+    /**
+     * Recovers the actions leading from the root of the search tree to the given
+     * node, including any final leg that completed it.
+     * 
+     * @param node The goal node.
+     * @return The actions, of the format ["R", "R", "L", ...].
+     */
+    private static List<String> trace(SearchTreeNode node) {
+        LinkedList<String> solution = new LinkedList<String>(node.leg);
+        for (; node.parent != null; node = node.parent) {
+            if (node.action != null) {
+                solution.addFirst(node.action);
+            }
         }
+        return new ArrayList<String>(solution);
+    }
 
-        return solution; 
+    /**
+     * Approximate, bounded-memory counterpart of {@link #solve(MazeProblem)} for
+     * real-time previews: beam searches the problem keeping only the best width
+     * nodes of each layer. See {@link BeamSearch}.
+     * 
+     * @param problem A MazeProblem that specifies the maze, actions, transitions.
+     * @param width   The number of nodes kept per layer of the search.
+     * @return The beam search Result holding a valid, possibly suboptimal
+     *         solution, its cost, and the lower bound on the optimal cost; or
+     *         null if no solution was found.
+     */
+    public static BeamSearch.Result solveBeam(MazeProblem problem, int width) {
+        return BeamSearch.search(problem, width);
+    }
 
-        
+    /**
+     * Counterpart of {@link #solve(MazeProblem)} for huge search spaces, whose
+     * frontier and closed set are held off-heap so that garbage collection pauses
+     * stay flat as the search grows. See {@link OffHeapSearch}.
+     * 
+     * @param problem A MazeProblem that specifies the maze, actions, transitions.
+     * @return An optimal List of actions of the format: ["R", "R", "L", ...], or
+     *         null if there is no solution.
+     */
+    public static List<String> solveOffHeap(MazeProblem problem) {
+        return OffHeapSearch.solve(problem);
     }
-    
 
     /**
      * SearchTreeNode private static nested class that is used in the Search
@@ -245,10 +219,10 @@ public class Pathfinder {
         int pathCost;
         int totalCost;
         
-        //Goals given by problem
-        private static Set<MazeState> GOAL_SET = new HashSet<MazeState>();
         //Goals collected along path
         Set<MazeState> goalsHit = new HashSet<MazeState>();
+        //Actions of the exact final leg that completed this node, if any
+        List<String> leg = Collections.emptyList();
 
         /**
          * Constructs a new SearchTreeNode to be used in the Search Tree.
@@ -269,14 +243,6 @@ public class Pathfinder {
         }
 
 
-        /**
-         * Returns wether or not path has hit all goals
-         */
-        public boolean goalComplete()
-        {
-            return goalsHit.containsAll(GOAL_SET);
-        }
-
         /**
          * Overidden! checks for state and goalsHit equality
          */
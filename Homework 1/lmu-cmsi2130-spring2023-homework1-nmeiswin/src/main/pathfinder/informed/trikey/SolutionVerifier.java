@@ -0,0 +1,158 @@
+package main.pathfinder.informed.trikey;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * High-throughput counterpart of MazeProblem.testSolution for auditing large
+ * numbers of stored routes against one maze. The maze is flattened once into
+ * primitive per-cell tables (legal move directions, entry costs, and key bits),
+ * and routes are given as packed paths, so that verifying a route walks those
+ * tables without allocating or comparing Strings; batches of routes are
+ * verified in parallel.
+ *
+ * <pre>
+ * Packed path layout (see pack):
+ *   path[0]   the number of moves
+ *   path[1..] the moves, 32 per long from the least significant bits up,
+ *             2 bits each holding the direction index 0-3 for U, D, L, R
+ * </pre>
+ *
+ * A move off the edge of the maze (possible in mazes that are not walled in)
+ * and a malformed packed path are both rejected as ILLEGAL rather than throwing.
+ */
+public class SolutionVerifier {
+
+    /**
+     * Result of verifying a path containing an illegal move: into a wall, against
+     * a one-way aisle, or out of the maze's bounds; also the result of a
+     * malformed packed path.
+     */
+    public static final int ILLEGAL = -1;
+
+    /**
+     * Result of verifying a legal path that does not collect all of the keys.
+     */
+    public static final int INCOMPLETE = -2;
+
+    private static final int MOVES_PER_WORD = 32;
+    // Bits of the key tiles '1', '2', and '3', which must all be collected
+    private static final int ALL_KEYS = 0b111;
+
+    // Fields
+    // -----------------------------------------------------------------------------
+    private final int initialCell;
+    // Per row-major cell: bit d set if moving in direction d is legal, the cost
+    // of entering it, and the bit of the key tile on it (0 if none)
+    private final byte[] legalMoves, costs, keyBits;
+    private final int[] delta;
+
+    // Constructor
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Flattens the given maze into the tables used to verify paths against it.
+     *
+     * @param problem The maze that paths are to be verified against.
+     * @throws IllegalArgumentException if the maze has no initial state
+     */
+    public SolutionVerifier(MazeProblem problem) {
+        MazeState initial = problem.getInitial();
+        if (initial == null) {
+            throw new IllegalArgumentException("Cannot verify paths in a maze without an initial state");
+        }
+        int rows = problem.getRows(), cols = problem.getCols(), cells = rows * cols;
+        this.initialCell = initial.row() * cols + initial.col();
+        this.legalMoves = new byte[cells];
+        this.costs = new byte[cells];
+        this.keyBits = new byte[cells];
+        this.delta = new int[4];
+        for (int d = 0; d < 4; d++) {
+            delta[d] = MazeProblem.D_ROW[d] * cols + MazeProblem.D_COL[d];
+        }
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int cell = row * cols + col;
+                char tile = problem.getTile(col, row);
+                if (tile == 'X') {
+                    continue;
+                }
+                for (int d = 0; d < 4; d++) {
+                    // canMove treats everything outside of the maze as a wall, so
+                    // moves off its edge are never marked legal
+                    legalMoves[cell] |= problem.canMove(col, row, d) ? 1 << d : 0;
+                }
+                costs[cell] = (byte) problem.getCost(col, row);
+                keyBits[cell] = (byte) ((tile >= '1' && tile <= '3') ? 1 << (tile - '1') : 0);
+            }
+        }
+    }
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Packs a list of actions into the packed path layout.
+     *
+     * @param actions The actions, each one of "U", "D", "L", or "R".
+     * @return The packed path.
+     * @throws IllegalArgumentException if any action is not one of those four
+     */
+    public static long[] pack(List<String> actions) {
+        long[] path = new long[1 + (actions.size() + MOVES_PER_WORD - 1) / MOVES_PER_WORD];
+        path[0] = actions.size();
+        List<String> directions = Arrays.asList(MazeProblem.ACTIONS);
+        for (int i = 0; i < actions.size(); i++) {
+            int d = directions.indexOf(actions.get(i));
+            if (d < 0) {
+                throw new IllegalArgumentException("Cannot pack unknown action " + actions.get(i));
+            }
+            path[1 + i / MOVES_PER_WORD] |= (long) d << (2 * (i % MOVES_PER_WORD));
+        }
+        return path;
+    }
+
+    /**
+     * Verifies one packed path, walking it from the maze's initial state.
+     *
+     * @param path The packed path.
+     * @return The path's total cost if it is legal and collects all of the keys;
+     *         otherwise ILLEGAL or INCOMPLETE.
+     */
+    public int verify(long[] path) {
+        if (path.length == 0 || path[0] < 0
+                || path[0] > (long) (path.length - 1) * MOVES_PER_WORD) {
+            return ILLEGAL;
+        }
+        long remaining = path[0];
+        int cell = initialCell, cost = 0, keys = 0;
+        for (int w = 1; remaining > 0; w++) {
+            long word = path[w];
+            int moves = (int) Math.min(remaining, MOVES_PER_WORD);
+            for (int i = 0; i < moves; i++, word >>>= 2) {
+                int d = (int) word & 3;
+                if ((legalMoves[cell] & (1 << d)) == 0) {
+                    return ILLEGAL;
+                }
+                cell += delta[d];
+                cost += costs[cell];
+                keys |= keyBits[cell];
+            }
+            remaining -= moves;
+        }
+        return keys == ALL_KEYS ? cost : INCOMPLETE;
+    }
+
+    /**
+     * Verifies a batch of packed paths in parallel.
+     *
+     * @param paths The packed paths.
+     * @return The result of verify for each path, in the same order.
+     */
+    public int[] verifyAll(List<long[]> paths) {
+        int[] results = new int[paths.size()];
+        IntStream.range(0, results.length).parallel().forEach(i -> results[i] = verify(paths.get(i)));
+        return results;
+    }
+
+}
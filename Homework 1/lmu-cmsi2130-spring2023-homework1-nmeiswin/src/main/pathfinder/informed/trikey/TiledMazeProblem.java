@@ -0,0 +1,339 @@
+package main.pathfinder.informed.trikey;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * MazeProblem backed by a tiled on-disk layout, for maps too large to hold in
+ * memory as a single grid. The maze is cut into square tiles. A tile is read
+ * from disk (a "fault") only when a search first looks at one of its cells, and
+ * is then kept in a bounded, least-recently-used tile cache. Searches therefore
+ * touch only the tiles their frontier reaches. Fault, hit, and eviction counts
+ * are kept so that the cache can be sized to a workload.
+ *
+ * <pre>
+ * File layout (big-endian):
+ *   int  MAGIC, int VERSION
+ *   int  rows, int cols, int tile size, int min cost
+ *   int  initial col, int initial row (-1 if none)
+ *   int[3][2]  col and row of keys '1', '2', '3' (-1 if absent)
+ *   int  reserved
+ *   tiles, row-major by tile, each:
+ *     byte[size * size]  tile characters, row-major within the tile
+ *     byte[size * size]  tile entry costs
+ * </pre>
+ *
+ * Tiles past the maze's right and bottom edges are padded with walls.
+ */
+public class TiledMazeProblem extends MazeProblem implements AutoCloseable {
+
+    // Constants
+    // -----------------------------------------------------------------------------
+    private static final int MAGIC = 0x4D5A5449; // "MZTI"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final String VALID_TILES = "XI.M123^v<>";
+    private static final String KEY_TILES = "123";
+
+    // Fields
+    // -----------------------------------------------------------------------------
+    private final FileChannel channel;
+    private final int tileSize, tilesAcross, tilesDown;
+    private final Map<Integer, byte[]> cache;
+    private long faults, hits, evictions;
+    // The most recently used tile, which most lookups hit without touching the map
+    private int lastId = -1;
+    private byte[] lastTile;
+
+    // Constructors
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Constructs a TiledMazeProblem over an open tiled file whose header has been
+     * read.
+     */
+    private TiledMazeProblem(FileChannel channel, int rows, int cols, int tileSize, MazeState initial,
+            Set<MazeState> keys, int minCost, int cacheTiles) {
+        super(rows, cols, initial, keys, minCost);
+        this.channel = channel;
+        this.tileSize = tileSize;
+        this.tilesAcross = (cols + tileSize - 1) / tileSize;
+        this.tilesDown = (rows + tileSize - 1) / tileSize;
+        this.cache = new LinkedHashMap<Integer, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+                if (size() > cacheTiles) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Opens a tiled maze file for searching, reading only its header.
+     *
+     * @param file       The tiled maze file, as written by write.
+     * @param cacheTiles The most tiles to keep in memory at once, at least 1.
+     * @return The tiled maze.
+     * @throws IOException if the file cannot be read or is not a tiled maze.
+     */
+    public static TiledMazeProblem open(Path file, int cacheTiles) throws IOException {
+        if (cacheTiles < 1) {
+            throw new IllegalArgumentException("The tile cache must hold at least one tile");
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(channel, header, 0);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a tiled maze");
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported tiled maze version " + header.getInt(4));
+            }
+            int rows = header.getInt(8), cols = header.getInt(12), tileSize = header.getInt(16);
+            long tiles = (long) ((rows + tileSize - 1) / tileSize) * ((cols + tileSize - 1) / tileSize);
+            if (channel.size() != HEADER_BYTES + tiles * 2 * tileSize * tileSize) {
+                throw new IOException("Truncated tiled maze");
+            }
+            MazeState initial = (header.getInt(24) < 0) ? null
+                    : new MazeState(header.getInt(24), header.getInt(28), null);
+            Set<MazeState> keys = new HashSet<>();
+            for (int k = 0; k < KEY_TILES.length(); k++) {
+                int col = header.getInt(32 + 8 * k), row = header.getInt(36 + 8 * k);
+                if (col >= 0) {
+                    keys.add(new MazeState(col, row, "" + KEY_TILES.charAt(k)));
+                }
+            }
+            return new TiledMazeProblem(channel, rows, cols, tileSize, initial, keys, header.getInt(20), cacheTiles);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a maze in the tiled layout, streaming it in one strip of tile rows
+     * at a time so that the whole maze never has to be in memory.
+     *
+     * @param file     The destination file, replaced if it exists.
+     * @param rows     The maze's rows, top to bottom, all of the same length.
+     * @param costRows The cost of entering each tile of each row, 1 to 9 for open
+     *                 tiles; or null to use the default mud costs.
+     * @param tileSize The side length of each square tile.
+     * @throws IOException if the file cannot be written.
+     * @throws IllegalArgumentException if the maze or costs are invalid
+     */
+    public static void write(Path file, Iterator<String> rows, Iterator<int[]> costRows, int tileSize)
+            throws IOException {
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("Tiles must be at least one cell across");
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION);
+            int[] initialAndKeys = new int[2 + 2 * KEY_TILES.length()];
+            Arrays.fill(initialAndKeys, -1);
+            int cols = -1, rowCount = 0, minCost = 9;
+            String[] strip = new String[tileSize];
+            int[][] stripCosts = new int[tileSize][];
+            for (int tileRow = 0; rows.hasNext(); tileRow++) {
+                int stripRows = 0;
+                for (; stripRows < tileSize && rows.hasNext(); stripRows++, rowCount++) {
+                    String row = rows.next();
+                    int[] costs = (costRows == null) ? null : costRows.next();
+                    cols = (cols < 0) ? row.length() : cols;
+                    if (row.length() != cols || (costs != null && costs.length != cols)) {
+                        throw new IllegalArgumentException("Maze formatted invalidly");
+                    }
+                    stripCosts[stripRows] = new int[cols];
+                    for (int col = 0; col < cols; col++) {
+                        char tile = row.charAt(col);
+                        int cost = (costs == null) ? (tile == 'M' ? 3 : 1) : costs[col];
+                        if (VALID_TILES.indexOf(tile) < 0) {
+                            throw new IllegalArgumentException("Maze formatted invalidly");
+                        }
+                        if (tile != 'X') {
+                            if (cost < 1 || cost > 9) {
+                                throw new IllegalArgumentException(
+                                        "Terrain cost missing or out of range at (" + col + ", " + rowCount + ")");
+                            }
+                            minCost = Math.min(minCost, cost);
+                        }
+                        // The initial state's position goes in slot 0, key k's in slot 2 + 2k
+                        int key = KEY_TILES.indexOf(tile), slot = (tile == 'I') ? 0 : 2 + 2 * key;
+                        if (tile == 'I' || key >= 0) {
+                            initialAndKeys[slot] = col;
+                            initialAndKeys[slot + 1] = rowCount;
+                        }
+                        stripCosts[stripRows][col] = (tile == 'X') ? 1 : cost;
+                    }
+                    strip[stripRows] = row;
+                }
+                writeStrip(channel, strip, stripCosts, stripRows, tileRow, cols, tileSize);
+            }
+            header.putInt(rowCount).putInt(Math.max(cols, 0)).putInt(tileSize).putInt(minCost);
+            for (int value : initialAndKeys) {
+                header.putInt(value);
+            }
+            header.clear();
+            writeFully(channel, header, 0);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Writes an in-memory maze in the tiled layout; see the streaming write.
+     *
+     * @param file     The destination file, replaced if it exists.
+     * @param maze     The maze, as accepted by MazeProblem.
+     * @param costs    The terrain costs indexed [row][col], or null for mud costs.
+     * @param tileSize The side length of each square tile.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(Path file, String[] maze, int[][] costs, int tileSize) throws IOException {
+        write(file, Arrays.asList(maze).iterator(), costs == null ? null : Arrays.asList(costs).iterator(), tileSize);
+    }
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    @Override
+    public char getTile(int col, int row) {
+        if (row < 0 || row >= getRows() || col < 0 || col >= getCols()) {
+            return 'X';
+        }
+        return (char) tile(col, row)[(row % tileSize) * tileSize + col % tileSize];
+    }
+
+    @Override
+    public int getCost(int col, int row) {
+        if (row < 0 || row >= getRows() || col < 0 || col >= getCols()) {
+            return 1;
+        }
+        return tile(col, row)[tileSize * tileSize + (row % tileSize) * tileSize + col % tileSize];
+    }
+
+    /**
+     * @return The number of tiles read from disk.
+     */
+    public synchronized long faults() {
+        return faults;
+    }
+
+    /**
+     * @return The number of tile lookups served from memory.
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of tiles dropped from the cache to make room.
+     */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * @return The number of tiles in the maze.
+     */
+    public long tileCount() {
+        return (long) tilesAcross * tilesDown;
+    }
+
+    /**
+     * Closes the underlying file.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Helpers
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Returns the tile holding the given in-bounds cell, reading it from disk if
+     * it is not cached.
+     */
+    private synchronized byte[] tile(int col, int row) {
+        int id = (row / tileSize) * tilesAcross + col / tileSize;
+        if (id == lastId) {
+            hits++;
+            return lastTile;
+        }
+        byte[] tile = cache.get(id);
+        if (tile != null) {
+            hits++;
+        } else {
+            faults++;
+            int tileBytes = 2 * tileSize * tileSize;
+            tile = new byte[tileBytes];
+            try {
+                readFully(channel, ByteBuffer.wrap(tile), HEADER_BYTES + (long) id * tileBytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read maze tile " + id, e);
+            }
+            cache.put(id, tile);
+        }
+        lastId = id;
+        lastTile = tile;
+        return tile;
+    }
+
+    /**
+     * Writes the tiles of one strip of rows, padding them with walls.
+     */
+    private static void writeStrip(FileChannel channel, String[] strip, int[][] stripCosts, int stripRows,
+            int tileRow, int cols, int tileSize) throws IOException {
+        int tilesAcross = (cols + tileSize - 1) / tileSize, area = tileSize * tileSize;
+        for (int tileCol = 0; tileCol < tilesAcross; tileCol++) {
+            byte[] tile = new byte[2 * area];
+            for (int r = 0; r < tileSize; r++) {
+                for (int c = 0; c < tileSize; c++) {
+                    int col = tileCol * tileSize + c;
+                    boolean inside = r < stripRows && col < cols;
+                    tile[r * tileSize + c] = (byte) (inside ? strip[r].charAt(col) : 'X');
+                    tile[area + r * tileSize + c] = (byte) (inside ? stripCosts[r][col] : 1);
+                }
+            }
+            long offset = HEADER_BYTES + ((long) tileRow * tilesAcross + tileCol) * 2 * area;
+            writeFully(channel, ByteBuffer.wrap(tile), offset);
+        }
+    }
+
+    /**
+     * Fills the given buffer from the channel starting at the given position.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Truncated tiled maze");
+            }
+        }
+    }
+
+    /**
+     * Writes all of the given buffer to the channel starting at the given position.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+package test.pathfinder.informed.trikey;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.*;
+import main.pathfinder.informed.trikey.*;
+
+/**
+ * Unit tests for the BidirectionalSearch and for Pathfinder.solve, which uses it
+ * to finish its final legs.
+ */
+public class BidirectionalSearchTests {
+
+    // =================================================
+    // Test Configurations
+    // =================================================
+
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    static final Map<String, int[]> MOVES = Map.of(
+        "U", new int[] {0, -1}, "D", new int[] {0, 1}, "L", new int[] {-1, 0}, "R", new int[] {1, 0}
+    );
+
+    /**
+     * Walks the given actions between two tiles, asserting that every move is
+     * legal and that they end on the target.
+     *
+     * @return The total cost of the walk.
+     */
+    static int walk(MazeProblem prob, MazeState from, MazeState to, List<String> actions) {
+        int col = from.col(), row = from.row(), cost = 0;
+        for (String action : actions) {
+            assertTrue("Illegal move", prob.getTransitions(new MazeState(col, row, null)).containsKey(action));
+            col += MOVES.get(action)[0];
+            row += MOVES.get(action)[1];
+            cost += prob.getCost(col, row);
+        }
+        assertEquals(to, new MazeState(col, row, null));
+        return cost;
+    }
+
+    // =================================================
+    // Unit Tests
+    // =================================================
+
+    @Test
+    public void testBidirectional_matchesDistanceFields() {
+        String[] maze = {
+            "XXXXXXXXXXXX",
+            "XI....>....X",
+            "X.XXX.X.XX.X",
+            "X.M.X.^.M..X",
+            "X.X.v.X.XXvX",
+            "X...X..<...X",
+            "XXXXXXXXXXXX"
+        };
+        Random rng = new Random(2130);
+        int[][] costs = new int[maze.length][maze[0].length()];
+        for (int[] row : costs) {
+            for (int c = 0; c < row.length; c++) {
+                row[c] = 1 + rng.nextInt(9);
+            }
+        }
+        for (MazeProblem prob : Arrays.asList(new MazeProblem(maze), new MazeProblem(maze, costs))) {
+            List<MazeState> open = new ArrayList<>();
+            for (int r = 0; r < prob.getRows(); r++) {
+                for (int c = 0; c < prob.getCols(); c++) {
+                    if (prob.getTile(c, r) != 'X') {
+                        open.add(new MazeState(c, r, null));
+                    }
+                }
+            }
+            for (MazeState to : open) {
+                int[] field = DistanceField.toTarget(prob, to.col(), to.row());
+                for (MazeState from : open) {
+                    List<String> actions = BidirectionalSearch.solve(prob, from, to);
+                    int expected = field[from.row() * prob.getCols() + from.col()];
+                    if (expected == DistanceField.UNREACHABLE) {
+                        assertNull(actions);
+                    } else {
+                        assertEquals(from + " to " + to, expected, walk(prob, from, to, actions));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBidirectional_singleKey() {
+        String[] maze = {
+            "XXXXXXXXXX",
+            "XI..MMM..X",
+            "X.XXXXXX.X",
+            "X.M.....1X",
+            "XXXXXXXXXX"
+        };
+        MazeProblem prob = new MazeProblem(maze);
+        List<String> solution = Pathfinder.solve(prob);
+        // Around the bottom, through one mud tile rather than three; testSolution
+        // wants all three keys, so the route is walked to the one key instead
+        assertEquals(11, walk(prob, prob.getInitial(), new MazeState(8, 3, null), solution));
+    }
+
+    @Test
+    public void testPathfinder_optimalFromEveryStart() {
+        String[] blank = new String[PathfinderModeTests.WINDING.length];
+        for (int r = 0; r < blank.length; r++) {
+            blank[r] = PathfinderModeTests.WINDING[r].replace('I', '.');
+        }
+        int cols = blank[0].length();
+        int[] optimal = MultiStartSolver.solveAll(new MazeProblem(blank));
+        for (int r = 0; r < blank.length; r++) {
+            for (int c = 0; c < cols; c++) {
+                if (blank[r].charAt(c) != '.') {
+                    continue;
+                }
+                String[] started = blank.clone();
+                started[r] = blank[r].substring(0, c) + "I" + blank[r].substring(c + 1);
+                MazeProblem prob = new MazeProblem(started);
+                List<String> solution = Pathfinder.solve(prob);
+                assertArrayEquals("Start (" + c + ", " + r + ")", new int[] {1, optimal[r * cols + c]},
+                        prob.testSolution(solution));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+package test.pathfinder.informed.trikey;
+
+import java.util.*;
+import main.pathfinder.informed.trikey.*;
+
+/**
+ * Times DistanceSweeper against DistanceField's Dijkstra on large grids of
+ * several kinds, checking that both produce the same field. Run with the side
+ * length of the grids as its argument (default 1000); each time reported is the
+ * best of several runs, after the JIT has warmed up.
+ */
+public class DistanceSweeperBenchmark {
+
+    private static final int RUNS = 7;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        Map<String, String[]> grids = new LinkedHashMap<>();
+        grids.put("open", DistanceSweeperTests.randomMaze(size, ".", new Random(1)));
+        grids.put("mud 30%", DistanceSweeperTests.randomMaze(size, ".......MMM", new Random(2)));
+        grids.put("walls 5%", DistanceSweeperTests.randomMaze(size, "...................X", new Random(3)));
+        grids.put("walls 10%", DistanceSweeperTests.randomMaze(size, ".........X", new Random(4)));
+        grids.put("walls 20%", DistanceSweeperTests.randomMaze(size, "........XX", new Random(5)));
+        grids.put("rows serpentine", serpentine(size, false));
+        grids.put("cols serpentine", serpentine(size, true));
+
+        System.out.printf("%-16s %6s %12s %12s %8s%n", "grid", "suits", "dijkstra ms", "sweeper ms", "speedup");
+        for (Map.Entry<String, String[]> grid : grids.entrySet()) {
+            MazeProblem prob = new MazeProblem(grid.getValue());
+            int col = size / 2, row = size / 2;
+            while (prob.getTile(col, row) == 'X') {
+                col++;
+            }
+            DistanceSweeper sweeper = new DistanceSweeper(prob);
+            long dijkstra = Long.MAX_VALUE, sweep = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                int[] expected = DistanceField.toTarget(prob, col, row);
+                dijkstra = Math.min(dijkstra, System.nanoTime() - start);
+                start = System.nanoTime();
+                int[] swept = sweeper.toTarget(col, row);
+                sweep = Math.min(sweep, System.nanoTime() - start);
+                if (!Arrays.equals(expected, swept)) {
+                    throw new AssertionError("Sweeper disagrees with Dijkstra on " + grid.getKey());
+                }
+            }
+            System.out.printf("%-16s %6s %12.1f %12.1f %7.2fx%n", grid.getKey(), DistanceSweeper.suits(prob),
+                    dijkstra / 1e6, sweep / 1e6, (double) dijkstra / sweep);
+        }
+    }
+
+    /**
+     * Builds a single corridor winding back and forth along the rows, or along
+     * the columns, of a walled-in square grid.
+     */
+    static String[] serpentine(int size, boolean alongCols) {
+        String[] maze = new String[size];
+        for (int r = 0; r < size; r++) {
+            StringBuilder row = new StringBuilder();
+            for (int c = 0; c < size; c++) {
+                int across = alongCols ? c : r, along = alongCols ? r : c;
+                boolean wall = r == 0 || c == 0 || r == size - 1 || c == size - 1
+                        || (across % 2 == 0 && along != ((across % 4 == 0) ? size - 2 : 1));
+                row.append(wall ? 'X' : '.');
+            }
+            maze[r] = row.toString();
+        }
+        return maze;
+    }
+
+}
@@ -0,0 +1,115 @@
+package test.pathfinder.informed.trikey;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.*;
+import main.pathfinder.informed.trikey.*;
+
+/**
+ * Unit tests for the DistanceSweeper, checking that its fields are identical to
+ * the Dijkstra fields of DistanceField.
+ */
+public class DistanceSweeperTests {
+
+    // =================================================
+    // Test Configurations
+    // =================================================
+
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /**
+     * Asserts that the sweeper's field to every open tile of the maze matches the
+     * Dijkstra field.
+     *
+     * @param prob The maze to compare fields over.
+     */
+    static void assertMatchesDijkstra(MazeProblem prob) {
+        DistanceSweeper sweeper = new DistanceSweeper(prob);
+        for (int row = 0; row < prob.getRows(); row++) {
+            for (int col = 0; col < prob.getCols(); col++) {
+                if (prob.getTile(col, row) != 'X') {
+                    assertArrayEquals("Target (" + col + ", " + row + ")",
+                            DistanceField.toTarget(prob, col, row), sweeper.toTarget(col, row));
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds a random walled-in maze of the given size and tile mix.
+     *
+     * @param size  The side length of the maze, including its walls.
+     * @param tiles The tiles to draw each interior cell from.
+     * @param rng   The source of randomness.
+     * @return The maze.
+     */
+    static String[] randomMaze(int size, String tiles, Random rng) {
+        String[] maze = new String[size];
+        for (int r = 0; r < size; r++) {
+            StringBuilder row = new StringBuilder();
+            for (int c = 0; c < size; c++) {
+                boolean edge = r == 0 || c == 0 || r == size - 1 || c == size - 1;
+                row.append(edge ? 'X' : tiles.charAt(rng.nextInt(tiles.length())));
+            }
+            maze[r] = row.toString();
+        }
+        return maze;
+    }
+
+    // =================================================
+    // Unit Tests
+    // =================================================
+
+    @Test
+    public void testSweeper_mudAndWalls() {
+        Random rng = new Random(2130);
+        for (int trial = 0; trial < 5; trial++) {
+            assertMatchesDijkstra(new MazeProblem(randomMaze(16, "......MMX", rng)));
+        }
+    }
+
+    @Test
+    public void testSweeper_terrainAndAisles() {
+        Random rng = new Random(2130);
+        for (int trial = 0; trial < 5; trial++) {
+            String[] maze = randomMaze(14, ".......X^v<>", rng);
+            int[][] costs = new int[maze.length][maze.length];
+            for (int[] row : costs) {
+                for (int c = 0; c < row.length; c++) {
+                    row[c] = 1 + rng.nextInt(9);
+                }
+            }
+            assertMatchesDijkstra(new MazeProblem(maze, costs));
+        }
+    }
+
+    @Test
+    public void testSweeper_windingFallsBack() {
+        // A serpentine corridor winding up and down needs a round of sweeps for
+        // every two bends, more than the sweeper allows before falling back
+        int size = 161;
+        String[] maze = new String[size];
+        for (int r = 0; r < size; r++) {
+            StringBuilder row = new StringBuilder();
+            for (int c = 0; c < size; c++) {
+                boolean wall = r == 0 || c == 0 || r == size - 1 || c == size - 1
+                        || (c % 2 == 0 && r != ((c % 4 == 0) ? 1 : size - 2));
+                row.append(wall ? 'X' : '.');
+            }
+            maze[r] = row.toString();
+        }
+        MazeProblem prob = new MazeProblem(maze);
+        int[] field = new DistanceSweeper(prob).toTarget(1, 1);
+        assertArrayEquals(DistanceField.toTarget(prob, 1, 1), field);
+        assertTrue(field[(size - 2) * size + size - 2] > 40 * (size - 2));
+        // Indexes only sweep mazes open enough to converge quickly
+        assertFalse(DistanceSweeper.suits(prob));
+        assertTrue(DistanceSweeper.suits(new MazeProblem(PathfinderModeTests.openMaze(20))));
+    }
+
+}
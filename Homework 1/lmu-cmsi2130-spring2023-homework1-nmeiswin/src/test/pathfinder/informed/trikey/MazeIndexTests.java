@@ -0,0 +1,103 @@
+package test.pathfinder.informed.trikey;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.IOException;
+import java.nio.file.*;
+import main.pathfinder.informed.trikey.*;
+
+/**
+ * Unit tests for the persistent MazeIndex, including its distance fields,
+ * component labels, and stale-index detection.
+ */
+public class MazeIndexTests {
+
+    // =================================================
+    // Test Configurations
+    // =================================================
+
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(1);
+
+    static final String[] MAZE = {
+    //   0123456
+        "XXXXXXX", // 0
+        "XI.3..X", // 1
+        "X.MMM.X", // 2
+        "X2X.X1X", // 3
+        "XXXXXXX"  // 4
+    };
+
+    // =================================================
+    // Unit Tests
+    // =================================================
+
+    @Test
+    public void testMazeIndex_distances() {
+        MazeProblem prob = new MazeProblem(MAZE);
+        MazeIndex index = MazeIndex.build(prob);
+        assertEquals(3, index.keyCount());
+        assertEquals(3 * 7 + 1, index.keyCell(1)); // key "2"
+        assertEquals(6, index.distance(0, 1 * 7 + 1)); // I -> 1
+        assertEquals(2, index.distance(1, 1 * 7 + 1)); // I -> 2
+        assertEquals(2, index.distance(2, 1 * 7 + 1)); // I -> 3
+        assertEquals(DistanceField.UNREACHABLE, index.distance(0, 0));
+    }
+
+    @Test
+    public void testMazeIndex_components() {
+        String[] maze = {
+            "XXXXXXX",
+            "XI.X1.X",
+            "X2.X.3X",
+            "XXXXXXX"
+        };
+        MazeIndex index = MazeIndex.build(new MazeProblem(maze));
+        assertEquals(-1, index.component(0));
+        assertEquals(index.component(1 * 7 + 1), index.component(2 * 7 + 1));
+        assertNotEquals(index.component(1 * 7 + 1), index.component(1 * 7 + 4));
+    }
+
+    @Test
+    public void testMazeIndex_roundTrip() throws IOException {
+        MazeProblem prob = new MazeProblem(MAZE);
+        Path file = Files.createTempFile("maze", ".idx");
+        try {
+            MazeIndex built = MazeIndex.build(prob);
+            built.write(file);
+            MazeIndex loaded = MazeIndex.load(file);
+            assertTrue(loaded.isCurrent(prob));
+            assertEquals(built.checksum(), loaded.checksum());
+            for (int k = 0; k < built.keyCount(); k++) {
+                for (int cell = 0; cell < prob.getRows() * prob.getCols(); cell++) {
+                    assertEquals(built.distance(k, cell), loaded.distance(k, cell));
+                    assertEquals(built.tile(cell), loaded.tile(cell));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testMazeIndex_stale() throws IOException {
+        String[] changed = MAZE.clone();
+        changed[2] = "X.M.M.X";
+        Path file = Files.createTempFile("maze", ".idx");
+        try {
+            MazeIndex.build(new MazeProblem(MAZE)).write(file);
+            MazeProblem prob = new MazeProblem(changed);
+            assertFalse(MazeIndex.load(file).isCurrent(prob));
+            MazeIndex rebuilt = MazeIndex.loadOrBuild(file, prob);
+            assertTrue(rebuilt.isCurrent(prob));
+            assertTrue(MazeIndex.load(file).isCurrent(prob));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+}
@@ -0,0 +1,204 @@
+package test.pathfinder.informed.trikey;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import main.pathfinder.informed.trikey.*;
+
+/**
+ * Unit tests for the MazeService, run against it entirely on localhost.
+ */
+public class MazeServiceTests {
+
+    // =================================================
+    // Test Configurations
+    // =================================================
+
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /**
+     * Sends each of the given mazes as a request on one connection to the service,
+     * returning the response lines.
+     *
+     * @param port  The service's port.
+     * @param mazes The mazes to send.
+     * @return The response to each maze, in order.
+     * @throws IOException if the connection fails.
+     */
+    static List<String> request(int port, String[]... mazes) throws IOException {
+        List<String> responses = new ArrayList<>();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            for (String[] maze : mazes) {
+                out.write(String.join("\n", maze) + "\n\n");
+                out.flush();
+                responses.add(in.readLine());
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * Builds a random maze with its initial state and three keys placed on
+     * distinct interior tiles, so that concurrent solves each have their own keys.
+     *
+     * @param size The side length of the maze, including its walls.
+     * @param rng  The source of randomness.
+     * @return The maze.
+     */
+    static String[] randomKeyedMaze(int size, Random rng) {
+        char[][] grid = new char[size][];
+        String[] tiles = DistanceSweeperTests.randomMaze(size, ".....MX", rng);
+        for (int r = 0; r < size; r++) {
+            grid[r] = tiles[r].toCharArray();
+        }
+        Set<Integer> placed = new HashSet<>();
+        for (char tile : "I123".toCharArray()) {
+            int cell;
+            do {
+                cell = (1 + rng.nextInt(size - 2)) * size + 1 + rng.nextInt(size - 2);
+            } while (!placed.add(cell));
+            grid[cell / size][cell % size] = tile;
+        }
+        String[] maze = new String[size];
+        for (int r = 0; r < size; r++) {
+            maze[r] = new String(grid[r]);
+        }
+        return maze;
+    }
+
+    // =================================================
+    // Unit Tests
+    // =================================================
+
+    @Test
+    public void testService_solves() throws IOException {
+        String[] solvable = {
+            "XXXXXXX",
+            "XI.1.2X",
+            "X.....X",
+            "X.X.X3X",
+            "XXXXXXX"
+        };
+        String[] unsolvable = {
+            "XXXXXXX",
+            "XI.3..X",
+            "X.MXM.X",
+            "X2X1X.X",
+            "XXXXXXX"
+        };
+        String[] malformed = { "XXXX", "XIZX", "XXXX" };
+        String[] noInitial = { "XXXXX", "X123X", "XXXXX" };
+        String[] missingKey = { "XXXXX", "XI12X", "XXXXX" };
+        String[] tooWide = { "X".repeat(MazeService.MAX_COLS + 1) };
+        try (MazeService service = new MazeService(0, 2, 4)) {
+            List<String> responses = request(service.port(), solvable, unsolvable, malformed, noInitial, missingKey,
+                    tooWide, solvable);
+            String[] ok = responses.get(0).split(" ");
+            assertEquals("OK", ok[0]);
+            assertEquals("6", ok[1]);
+            MazeProblem prob = new MazeProblem(solvable);
+            assertArrayEquals(new int[] {1, 6}, prob.testSolution(Arrays.asList(ok[3].split(""))));
+            assertTrue(responses.get(1).startsWith("NONE "));
+            assertTrue(responses.get(2).startsWith("ERROR "));
+            // Mazes a solver cannot start on are malformed, not internal failures
+            assertEquals("ERROR Maze formatted invalidly", responses.get(3));
+            assertEquals("ERROR Maze formatted invalidly", responses.get(4));
+            // Too large a maze is turned away, and the connection still serves
+            assertEquals("ERROR Maze too large", responses.get(5));
+            assertTrue(responses.get(6).startsWith("OK 6 "));
+            assertEquals(3, service.served());
+        }
+    }
+
+    @Test
+    public void testService_backpressure() throws Exception {
+        String[] big = PathfinderModeTests.openMaze(120);
+        int clients = 8;
+        // The one worker is held until the rest of the clients have been answered,
+        // so the one request that fits in the queue waits and the others are BUSY
+        CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+        try (MazeService service = new MazeService(0, 1, 1, problem -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Pathfinder.solve(problem);
+        })) {
+            ExecutorService pool = Executors.newFixedThreadPool(clients);
+            List<Future<List<String>>> pending = new ArrayList<>();
+            pending.add(pool.submit(() -> request(service.port(), big)));
+            started.await();
+            for (int i = 1; i < clients; i++) {
+                pending.add(pool.submit(() -> request(service.port(), big)));
+            }
+            while (service.rejected() < clients - 2) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            int busy = 0, ok = 0;
+            for (Future<List<String>> response : pending) {
+                String line = response.get().get(0);
+                busy += line.equals("BUSY") ? 1 : 0;
+                ok += line.startsWith("OK ") ? 1 : 0;
+            }
+            pool.shutdown();
+            assertEquals(2, ok);
+            assertEquals(clients - 2, busy);
+            assertEquals(busy, service.rejected());
+        }
+    }
+
+    @Test
+    public void testService_concurrentSolvesKeepTheirOwnKeys() throws Exception {
+        Random rng = new Random(2130);
+        int mazeCount = 32, clients = 8;
+        String[][] mazes = new String[mazeCount][];
+        for (int i = 0; i < mazeCount; i++) {
+            mazes[i] = randomKeyedMaze(12, rng);
+        }
+        try (MazeService service = new MazeService(0, clients, 4 * clients)) {
+            ExecutorService pool = Executors.newFixedThreadPool(clients);
+            List<Future<List<String>>> pending = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                // Each client sends every maze, starting from a different one
+                String[][] order = new String[mazeCount][];
+                for (int i = 0; i < mazeCount; i++) {
+                    order[i] = mazes[(i + c * mazeCount / clients) % mazeCount];
+                }
+                pending.add(pool.submit(() -> request(service.port(), order)));
+            }
+            for (int c = 0; c < clients; c++) {
+                List<String> responses = pending.get(c).get();
+                for (int i = 0; i < mazeCount; i++) {
+                    MazeProblem prob = new MazeProblem(mazes[(i + c * mazeCount / clients) % mazeCount]);
+                    List<String> expected = Pathfinder.solve(prob);
+                    String[] response = responses.get(i).split(" ");
+                    if (expected == null) {
+                        assertEquals("NONE", response[0]);
+                        continue;
+                    }
+                    assertEquals("OK", response[0]);
+                    List<String> route = Arrays.asList(response[3].split(""));
+                    assertArrayEquals(prob.testSolution(expected), prob.testSolution(route));
+                }
+            }
+            pool.shutdown();
+            assertEquals(clients * mazeCount, service.served());
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package test.pathfinder.informed.trikey;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.*;
+import main.pathfinder.informed.trikey.*;
+
+/**
+ * Unit tests for weighted terrain costs and one-way aisles, checking that the
+ * solution test and the searches all honor them.
+ */
+public class MazeTerrainTests {
+
+    // =================================================
+    // Test Configurations
+    // =================================================
+
+    public static final String SOL_ERR = "Returned solution does not solve the maze",
+                               OPT_ERR = "Returned solution is suboptimal";
+
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(1);
+
+    static final int[][] COSTS = {
+        {0, 0, 0, 0, 0, 0, 0},
+        {0, 1, 1, 1, 1, 1, 0},
+        {0, 1, 0, 0, 0, 1, 0},
+        {0, 9, 2, 2, 2, 1, 0},
+        {0, 0, 0, 0, 0, 0, 0}
+    };
+
+    /**
+     * Asserts that each search finds a valid solution of the given optimal cost.
+     *
+     * @param prob The maze to solve.
+     * @param cost The optimal cost.
+     */
+    private static void assertSearchesOptimal(MazeProblem prob, int cost) {
+        for (List<String> solution : Arrays.asList(Pathfinder.solve(prob), Pathfinder.solveOffHeap(prob))) {
+            int[] result = prob.testSolution(solution);
+            assertEquals(SOL_ERR, 1, result[0]);
+            assertEquals(OPT_ERR, cost, result[1]);
+        }
+        MazeState initial = prob.getInitial();
+        assertEquals(cost, MultiStartSolver.solveAll(prob)[initial.row() * prob.getCols() + initial.col()]);
+    }
+
+    // =================================================
+    // Unit Tests
+    // =================================================
+
+    @Test
+    public void testTerrain_costGrid() {
+        String[] maze = {
+            "XXXXXXX",
+            "X1...IX",
+            "X.XXX.X",
+            "X2...3X",
+            "XXXXXXX"
+        };
+        MazeProblem prob = new MazeProblem(maze, COSTS);
+        assertEquals(9, prob.getCost(1, 3));
+        assertEquals(1, prob.getMinCost());
+        // Down for key 3, back up, along the top, then down through the 9
+        assertSearchesOptimal(prob, 18);
+        assertArrayEquals(new int[] {1, 21},
+                prob.testSolution(Arrays.asList("L", "L", "L", "L", "D", "D", "R", "R", "R", "R")));
+    }
+
+    @Test
+    public void testTerrain_oneWay() {
+        String[] maze = {
+            "XXXXXXX",
+            "X1.>.IX",
+            "X.XXX.X",
+            "X2...3X",
+            "XXXXXXX"
+        };
+        MazeProblem prob = new MazeProblem(maze, COSTS);
+        // The top aisle only runs right, so the keys are collected along the bottom
+        assertSearchesOptimal(prob, 19);
+        assertEquals(0, prob.testSolution(Arrays.asList("L", "L", "L", "L", "D", "D"))[0]);
+        assertFalse(prob.getTransitions(new MazeState(4, 1, null)).containsKey("L"));
+        assertTrue(prob.getTransitions(new MazeState(2, 1, null)).containsKey("R"));
+    }
+
+    @Test
+    public void testTerrain_unknownAction() {
+        String[] maze = {
+            "XXXXXXX",
+            "X1.>.IX",
+            "X.XXX.X",
+            "X2...3X",
+            "XXXXXXX"
+        };
+        MazeProblem prob = new MazeProblem(maze, COSTS);
+        assertArrayEquals(new int[] {0, -1}, prob.testSolution(Arrays.asList("D", "Q", "D")));
+    }
+
+    @Test
+    public void testTerrain_invalidCost() {
+        String[] maze = {
+            "XXXXX",
+            "XI12X",
+            "X3..X",
+            "XXXXX"
+        };
+        int[][] costs = {
+            {0, 0, 0, 0, 0},
+            {0, 1, 1, 1, 0},
+            {0, 1, 10, 1, 0},
+            {0, 0, 0, 0, 0}
+        };
+        try {
+            new MazeProblem(maze, costs);
+            fail("Accepted a terrain cost above 9");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+package test.pathfinder.informed.trikey;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.*;
+import main.pathfinder.informed.trikey.*;
+import main.pathfinder.informed.trikey.MultiAgentPlanner.Agent;
+
+/**
+ * Unit tests for the MultiAgentPlanner, replaying its routes to check that they
+ * are legal, complete, and free of collisions.
+ */
+public class MultiAgentPlannerTests {
+
+    // =================================================
+    // Test Configurations
+    // =================================================
+
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    static final Map<String, int[]> MOVES = Map.of(
+        "U", new int[] {0, -1}, "D", new int[] {0, 1}, "L", new int[] {-1, 0}, "R", new int[] {1, 0},
+        MultiAgentPlanner.WAIT, new int[] {0, 0}
+    );
+
+    /**
+     * Replays the given routes step by step, asserting that every move is legal,
+     * that each agent visits all of its keys, and that no two agents share a tile
+     * or swap tiles at any time step (finished agents staying on their last tile).
+     *
+     * @param prob   The maze shared by the agents.
+     * @param agents The agents.
+     * @param routes The planned routes, none of which may be null.
+     */
+    static void assertCollisionFree(MazeProblem prob, List<Agent> agents, List<List<String>> routes) {
+        int n = agents.size(), steps = 0;
+        int[] cols = new int[n], rows = new int[n];
+        List<Set<MazeState>> remaining = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            assertNotNull("Agent " + i + " was not routed", routes.get(i));
+            steps = Math.max(steps, routes.get(i).size());
+            cols[i] = agents.get(i).start().col();
+            rows[i] = agents.get(i).start().row();
+            remaining.add(new HashSet<>(agents.get(i).keys()));
+            remaining.get(i).remove(new MazeState(cols[i], rows[i], null));
+        }
+        for (int t = 0; t < steps; t++) {
+            int[] prevCols = cols.clone(), prevRows = rows.clone();
+            for (int i = 0; i < n; i++) {
+                if (t >= routes.get(i).size()) {
+                    continue;
+                }
+                String action = routes.get(i).get(t);
+                int[] move = MOVES.get(action);
+                if (move[0] != 0 || move[1] != 0) {
+                    assertTrue("Illegal move", prob.getTransitions(new MazeState(cols[i], rows[i], null)).containsKey(action));
+                }
+                cols[i] += move[0];
+                rows[i] += move[1];
+                remaining.get(i).remove(new MazeState(cols[i], rows[i], null));
+            }
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    assertFalse("Agents " + i + " and " + j + " collide at time " + (t + 1),
+                            cols[i] == cols[j] && rows[i] == rows[j]);
+                    assertFalse("Agents " + i + " and " + j + " swap at time " + t,
+                            cols[i] == prevCols[j] && rows[i] == prevRows[j]
+                            && cols[j] == prevCols[i] && rows[j] == prevRows[i]);
+                }
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            assertTrue("Agent " + i + " missed keys " + remaining.get(i), remaining.get(i).isEmpty());
+        }
+    }
+
+    // =================================================
+    // Unit Tests
+    // =================================================
+
+    @Test
+    public void testMultiAgent_passInCorridor() {
+        String[] maze = {
+            "XXXXXXXXX",
+            "X.......X",
+            "XXXX.XXXX",
+            "XXXXXXXXX"
+        };
+        MazeProblem prob = new MazeProblem(maze);
+        List<Agent> agents = Arrays.asList(
+            new Agent(new MazeState(1, 1, null), Arrays.asList(new MazeState(7, 1, null))),
+            new Agent(new MazeState(5, 1, null), Arrays.asList(new MazeState(1, 1, null)))
+        );
+        List<List<String>> routes = MultiAgentPlanner.plan(prob, agents, 1000);
+        assertCollisionFree(prob, agents, routes);
+        // The second agent must duck into the side pocket to let the first pass
+        assertEquals(6, routes.get(0).size());
+        assertTrue(routes.get(1).contains("D"));
+    }
+
+    @Test
+    public void testMultiAgent_manyAgents() {
+        int size = 42, n = 100;
+        String[] maze = PathfinderModeTests.openMaze(size);
+        MazeProblem prob = new MazeProblem(maze);
+        Random rng = new Random(2130);
+        Set<MazeState> starts = new HashSet<>();
+        List<Agent> agents = new ArrayList<>();
+        while (agents.size() < n) {
+            MazeState start = new MazeState(1 + rng.nextInt(size - 2), 1 + rng.nextInt(size - 2), null);
+            if (!starts.add(start)) {
+                continue;
+            }
+            List<MazeState> keys = new ArrayList<>();
+            for (int k = 0; k < 3; k++) {
+                keys.add(new MazeState(1 + rng.nextInt(size - 2), 1 + rng.nextInt(size - 2), null));
+            }
+            agents.add(new Agent(start, keys));
+        }
+        List<List<String>> routes = MultiAgentPlanner.plan(prob, agents, 8000);
+        assertCollisionFree(prob, agents, routes);
+    }
+
+    @Test
+    public void testMultiAgent_budgetCoversSetup() {
+        // An agent's cost-to-go covers the whole maze once per subset of its keys,
+        // which alone outlasts a small budget on a large maze
+        int size = 1000;
+        MazeProblem prob = new MazeProblem(PathfinderModeTests.openMaze(size));
+        List<MazeState> keys = new ArrayList<>();
+        for (int k = 0; k < 8; k++) {
+            keys.add(new MazeState(1 + k, size - 2, null));
+        }
+        List<Agent> agents = Arrays.asList(new Agent(new MazeState(1, 1, null), keys));
+        long start = System.nanoTime();
+        List<List<String>> routes = MultiAgentPlanner.plan(prob, agents, 50);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assertNull(routes.get(0));
+        assertTrue("Took " + millis + " ms", millis < 1_000);
+    }
+
+}
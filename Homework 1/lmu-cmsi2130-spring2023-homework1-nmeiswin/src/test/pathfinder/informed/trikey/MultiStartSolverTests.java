@@ -0,0 +1,138 @@
+package test.pathfinder.informed.trikey;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.*;
+import main.pathfinder.informed.trikey.*;
+
+/**
+ * Unit tests for the MultiStartSolver, checked against an exact search from
+ * each start cell individually.
+ */
+public class MultiStartSolverTests {
+
+    // =================================================
+    // Test Configurations
+    // =================================================
+
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(2);
+
+    /**
+     * Reference uniform-cost search over (position, collected keys) states, used
+     * to find the exact optimal cost of a single-start maze.
+     *
+     * @param prob The maze to solve.
+     * @return The optimal cost, or DistanceField.UNREACHABLE if unsolvable.
+     */
+    private static int optimalCost(MazeProblem prob) {
+        List<MazeState> keys = prob.getOrderedKeys();
+        int full = (1 << keys.size()) - 1;
+        Set<String> closed = new HashSet<>();
+        PriorityQueue<int[]> frontier = new PriorityQueue<>((a, b) -> a[0] - b[0]);
+        frontier.add(new int[] { 0, prob.getInitial().col(), prob.getInitial().row(), 0 });
+        while (!frontier.isEmpty()) {
+            int[] node = frontier.poll();
+            if (node[3] == full) {
+                return node[0];
+            }
+            if (!closed.add(node[1] + "," + node[2] + "," + node[3])) {
+                continue;
+            }
+            for (MazeState next : prob.getTransitions(new MazeState(node[1], node[2], null)).values()) {
+                int mask = node[3];
+                if (keys.contains(next)) {
+                    mask |= 1 << keys.indexOf(next);
+                }
+                frontier.add(new int[] { node[0] + prob.getCost(next), next.col(), next.row(), mask });
+            }
+        }
+        return DistanceField.UNREACHABLE;
+    }
+
+    /**
+     * Asserts that the many-start cost map agrees with the optimal cost when the
+     * initial state is moved to each plain open cell of the given maze in turn.
+     *
+     * @param maze A maze whose initial state is ignored.
+     */
+    private static void assertMatchesSingleStarts(String[] maze) {
+        String[] blank = new String[maze.length];
+        for (int r = 0; r < maze.length; r++) {
+            blank[r] = maze[r].replace('I', '.');
+        }
+        int cols = blank[0].length();
+        int[] costs = MultiStartSolver.solveAll(new MazeProblem(blank));
+        for (int r = 0; r < blank.length; r++) {
+            for (int c = 0; c < cols; c++) {
+                // Only plain tiles can be swapped for the initial state unchanged
+                if (blank[r].charAt(c) != '.') {
+                    continue;
+                }
+                String[] started = blank.clone();
+                started[r] = blank[r].substring(0, c) + "I" + blank[r].substring(c + 1);
+                assertEquals("Start (" + c + ", " + r + ")", optimalCost(new MazeProblem(started)),
+                        costs[r * cols + c]);
+            }
+        }
+    }
+
+    // =================================================
+    // Unit Tests
+    // =================================================
+
+    @Test
+    public void testMultiStart_t0() {
+        assertMatchesSingleStarts(new String[] {
+            "XXXXXXX",
+            "XI.1.2X",
+            "X.....X",
+            "X.X.X3X",
+            "XXXXXXX"
+        });
+    }
+
+    @Test
+    public void testMultiStart_t1() {
+        assertMatchesSingleStarts(new String[] {
+            "XXXXXXX",
+            "XI.3..X",
+            "X.MMM.X",
+            "X2X.X1X",
+            "XXXXXXX"
+        });
+    }
+
+    @Test
+    public void testMultiStart_t2() {
+        assertMatchesSingleStarts(new String[] {
+            "XXXXXXXXXXXXXXXXXX",
+            "X.......I.....X.2X",
+            "X.............X..X",
+            "XMMMMMM.......X.MX",
+            "X..1.....MM...X..X",
+            "X..MXX........XX.X",
+            "XXXXM.XXXX..MMX..X",
+            "X3..M............X",
+            "XXXXXXXXXXXXXXXXXX"
+        });
+    }
+
+    @Test
+    public void testMultiStart_unsolvable() {
+        int[] costs = MultiStartSolver.solveAll(new MazeProblem(new String[] {
+            "XXXXXXX",
+            "XI.3..X",
+            "X.MXM.X",
+            "X2X1X.X",
+            "XXXXXXX"
+        }));
+        assertEquals(DistanceField.UNREACHABLE, costs[1 * 7 + 1]);
+        assertEquals(DistanceField.UNREACHABLE, costs[0]);
+    }
+
+}
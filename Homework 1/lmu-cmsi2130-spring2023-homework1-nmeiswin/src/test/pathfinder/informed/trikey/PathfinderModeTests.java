@@ -0,0 +1,164 @@
+package test.pathfinder.informed.trikey;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.*;
+import main.pathfinder.informed.trikey.*;
+
+/**
+ * Unit tests for the alternative Pathfinder search modes, checking that each
+ * returns valid (and, where promised, optimal) solutions.
+ */
+public class PathfinderModeTests {
+
+    // =================================================
+    // Test Configurations
+    // =================================================
+
+    public static final String SOL_ERR = "Returned solution does not solve the maze",
+                               OPT_ERR = "Returned solution is suboptimal",
+                               NOS_ERR = "Returned a solution where there wasn't one";
+
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(2);
+
+    static final String[] MUDDY = {
+        "XXXXXXX",
+        "XI....X",
+        "X.MMM2X",
+        "X.X1X3X",
+        "XXXXXXX"
+    };
+
+    static final String[] UNSOLVABLE = {
+        "XXXXXXX",
+        "XI.3..X",
+        "X.MXM.X",
+        "X2X1X.X",
+        "XXXXXXX"
+    };
+
+    static final String[] WINDING = {
+        "XXXXXXXXXXXXXXXXXX",
+        "X.......I.....X.2X",
+        "X.............X..X",
+        "XMMMMMM.......X.MX",
+        "X..1.....MM...X..X",
+        "X..MXX........XX.X",
+        "XXXXM.XXXX..MMX..X",
+        "X3..M............X",
+        "XXXXXXXXXXXXXXXXXX"
+    };
+
+    /**
+     * Builds an open, walled-in square maze with the initial state in one corner
+     * and the keys in the other three.
+     *
+     * @param size The side length of the maze, including its walls.
+     * @return The maze.
+     */
+    static String[] openMaze(int size) {
+        String[] maze = new String[size];
+        for (int r = 0; r < size; r++) {
+            StringBuilder row = new StringBuilder();
+            for (int c = 0; c < size; c++) {
+                row.append(r == 0 || c == 0 || r == size - 1 || c == size - 1 ? 'X' : '.');
+            }
+            maze[r] = row.toString();
+        }
+        maze[1] = "XI" + maze[1].substring(2, size - 2) + "1X";
+        maze[size - 2] = "X3" + maze[size - 2].substring(2, size - 2) + "2X";
+        return maze;
+    }
+
+    // =================================================
+    // Beam Search
+    // =================================================
+
+    @Test
+    public void testBeam_wideIsOptimal() {
+        MazeProblem prob = new MazeProblem(MUDDY);
+        BeamSearch.Result result = Pathfinder.solveBeam(prob, 64);
+        int[] tested = prob.testSolution(result.actions());
+        assertEquals(SOL_ERR, 1, tested[0]);
+        assertEquals(OPT_ERR, 14, tested[1]);
+        assertEquals(14, result.cost());
+        assertTrue(result.lowerBound() <= 14);
+    }
+
+    @Test
+    public void testBeam_narrowIsValid() {
+        for (String[] maze : Arrays.asList(MUDDY, WINDING, openMaze(60))) {
+            MazeProblem prob = new MazeProblem(maze);
+            BeamSearch.Result result = Pathfinder.solveBeam(prob, 2);
+            int[] tested = prob.testSolution(result.actions());
+            assertEquals(SOL_ERR, 1, tested[0]);
+            assertEquals(tested[1], result.cost());
+            assertEquals(result.cost() - result.lowerBound(), result.gap());
+            assertTrue(result.gap() >= 0);
+            assertTrue(result.width() <= 2 << BeamSearch.MAX_WIDENINGS);
+        }
+    }
+
+    @Test
+    public void testBeam_unsolvable() {
+        assertNull(NOS_ERR, Pathfinder.solveBeam(new MazeProblem(UNSOLVABLE), 8));
+        // Walling in a key of an open maze leaves nothing for the beam to find,
+        // and it gives up after its fixed widenings rather than searching it all
+        String[] walled = openMaze(40);
+        walled[1] = walled[1].substring(0, 37) + "X1X";
+        walled[2] = walled[2].substring(0, 38) + "XX";
+        assertNull(NOS_ERR, Pathfinder.solveBeam(new MazeProblem(walled), 8));
+    }
+
+    @Test
+    public void testBeam_widthBounds() {
+        MazeProblem prob = new MazeProblem(MUDDY);
+        // The widest beam allowed is cut down to the state space of a small maze
+        BeamSearch.Result result = Pathfinder.solveBeam(prob, BeamSearch.MAX_WIDTH);
+        assertEquals(OPT_ERR, 14, result.cost());
+        for (int width : new int[] {0, BeamSearch.MAX_WIDTH + 1, Integer.MAX_VALUE}) {
+            try {
+                Pathfinder.solveBeam(prob, width);
+                fail("Accepted a beam width of " + width);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    // =================================================
+    // Off-Heap Search
+    // =================================================
+
+    @Test
+    public void testOffHeap_optimal() {
+        MazeProblem prob = new MazeProblem(MUDDY);
+        int[] result = prob.testSolution(Pathfinder.solveOffHeap(prob));
+        assertEquals(SOL_ERR, 1, result[0]);
+        assertEquals(OPT_ERR, 14, result[1]);
+
+        prob = new MazeProblem(WINDING);
+        result = prob.testSolution(Pathfinder.solveOffHeap(prob));
+        assertEquals(SOL_ERR, 1, result[0]);
+        assertEquals(OPT_ERR, 54, result[1]);
+    }
+
+    @Test
+    public void testOffHeap_large() {
+        MazeProblem prob = new MazeProblem(openMaze(302));
+        int[] result = prob.testSolution(Pathfinder.solveOffHeap(prob));
+        assertEquals(SOL_ERR, 1, result[0]);
+        assertEquals(OPT_ERR, 3 * 299, result[1]);
+    }
+
+    @Test
+    public void testOffHeap_unsolvable() {
+        assertNull(NOS_ERR, Pathfinder.solveOffHeap(new MazeProblem(UNSOLVABLE)));
+    }
+
+}
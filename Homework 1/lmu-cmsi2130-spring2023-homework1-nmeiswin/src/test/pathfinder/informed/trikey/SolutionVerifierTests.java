@@ -0,0 +1,107 @@
+package test.pathfinder.informed.trikey;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.*;
+import main.pathfinder.informed.trikey.*;
+
+/**
+ * Unit tests for the SolutionVerifier, checking it against
+ * MazeProblem.testSolution on both solutions and random walks.
+ */
+public class SolutionVerifierTests {
+
+    // =================================================
+    // Test Configurations
+    // =================================================
+
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(2);
+
+    static final List<String> DIRECTIONS = Arrays.asList("U", "D", "L", "R");
+
+    /**
+     * Translates a testSolution result into the result SolutionVerifier.verify
+     * promises for the same path.
+     */
+    static int expected(int[] tested) {
+        return tested[1] < 0 ? SolutionVerifier.ILLEGAL : tested[0] == 1 ? tested[1] : SolutionVerifier.INCOMPLETE;
+    }
+
+    // =================================================
+    // Unit Tests
+    // =================================================
+
+    @Test
+    public void testVerifier_matchesTestSolution() {
+        Random rng = new Random(2130);
+        for (String[] maze : Arrays.asList(PathfinderModeTests.MUDDY, PathfinderModeTests.WINDING,
+                PathfinderModeTests.openMaze(40))) {
+            MazeProblem prob = new MazeProblem(maze);
+            SolutionVerifier verifier = new SolutionVerifier(prob);
+            List<String> solution = Pathfinder.solve(prob);
+            assertEquals(prob.testSolution(solution)[1], verifier.verify(SolutionVerifier.pack(solution)));
+            for (int walk = 0; walk < 500; walk++) {
+                List<String> path = new ArrayList<>();
+                for (int i = rng.nextInt(100); i > 0; i--) {
+                    path.add(DIRECTIONS.get(rng.nextInt(4)));
+                }
+                assertEquals(expected(prob.testSolution(path)), verifier.verify(SolutionVerifier.pack(path)));
+            }
+        }
+    }
+
+    @Test
+    public void testVerifier_rejectsOutOfBounds() {
+        String[] maze = {
+            "I.1",
+            ".X2",
+            "3.."
+        };
+        MazeProblem prob = new MazeProblem(maze);
+        SolutionVerifier verifier = new SolutionVerifier(prob);
+        assertEquals(6, verifier.verify(SolutionVerifier.pack(Arrays.asList("R", "R", "D", "D", "L", "L"))));
+        assertEquals(SolutionVerifier.ILLEGAL, verifier.verify(SolutionVerifier.pack(Arrays.asList("L"))));
+        assertEquals(SolutionVerifier.ILLEGAL, verifier.verify(SolutionVerifier.pack(Arrays.asList("R", "R", "R"))));
+        assertEquals(SolutionVerifier.INCOMPLETE, verifier.verify(SolutionVerifier.pack(Arrays.asList("R", "R"))));
+        // Malformed: claims more moves than the path holds
+        assertEquals(SolutionVerifier.ILLEGAL, verifier.verify(new long[] {33, 0}));
+        assertEquals(SolutionVerifier.ILLEGAL, verifier.verify(new long[0]));
+    }
+
+    @Test
+    public void testVerifier_batch() {
+        MazeProblem prob = new MazeProblem(PathfinderModeTests.WINDING);
+        SolutionVerifier verifier = new SolutionVerifier(prob);
+        Random rng = new Random(2130);
+        List<long[]> paths = new ArrayList<>();
+        for (int walk = 0; walk < 10000; walk++) {
+            List<String> path = new ArrayList<>();
+            for (int i = rng.nextInt(80); i > 0; i--) {
+                path.add(DIRECTIONS.get(rng.nextInt(4)));
+            }
+            paths.add(SolutionVerifier.pack(path));
+        }
+        paths.add(SolutionVerifier.pack(Pathfinder.solve(prob)));
+        int[] results = verifier.verifyAll(paths);
+        for (int i = 0; i < paths.size(); i++) {
+            assertEquals(verifier.verify(paths.get(i)), results[i]);
+        }
+        assertTrue(results[paths.size() - 1] > 0);
+    }
+
+    @Test
+    public void testVerifier_packRejectsUnknownAction() {
+        try {
+            SolutionVerifier.pack(Arrays.asList("U", "Q"));
+            fail("Packed an unknown action");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package test.pathfinder.informed.trikey;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import main.pathfinder.informed.trikey.*;
+
+/**
+ * Unit tests for the TiledMazeProblem, checking that it reads back the maze it
+ * was written from and pages in only the tiles a search needs.
+ */
+public class TiledMazeProblemTests {
+
+    // =================================================
+    // Test Configurations
+    // =================================================
+
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    // =================================================
+    // Unit Tests
+    // =================================================
+
+    @Test
+    public void testTiled_roundTrip() throws IOException {
+        MazeProblem prob = new MazeProblem(PathfinderModeTests.WINDING);
+        Path file = Files.createTempFile("maze", ".tiles");
+        // Tiles of 4 do not divide the 18 x 9 maze, so its edge tiles are padded
+        TiledMazeProblem.write(file, PathfinderModeTests.WINDING, null, 4);
+        try (TiledMazeProblem tiled = TiledMazeProblem.open(file, 1)) {
+            assertEquals(prob.getRows(), tiled.getRows());
+            assertEquals(prob.getCols(), tiled.getCols());
+            assertEquals(prob.getInitial(), tiled.getInitial());
+            assertEquals(prob.getKeyStates(), tiled.getKeyStates());
+            assertEquals(prob.getMinCost(), tiled.getMinCost());
+            for (int row = -1; row <= prob.getRows(); row++) {
+                for (int col = -1; col <= prob.getCols(); col++) {
+                    assertEquals(prob.getTile(col, row), tiled.getTile(col, row));
+                    assertEquals(prob.getCost(col, row), tiled.getCost(col, row));
+                }
+            }
+            assertEquals(15, tiled.tileCount());
+            assertTrue(tiled.evictions() > 0);
+            List<String> solution = Pathfinder.solve(tiled);
+            assertArrayEquals(prob.testSolution(Pathfinder.solve(prob)), tiled.testSolution(solution));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testTiled_terrainCosts() throws IOException {
+        String[] maze = {
+            "XXXXXXX",
+            "X1.>.IX",
+            "X.XXX.X",
+            "X2...3X",
+            "XXXXXXX"
+        };
+        Path file = Files.createTempFile("maze", ".tiles");
+        TiledMazeProblem.write(file, maze, MazeTerrainTests.COSTS, 3);
+        try (TiledMazeProblem tiled = TiledMazeProblem.open(file, 4)) {
+            assertEquals(9, tiled.getCost(1, 3));
+            assertArrayEquals(new int[] {1, 19}, tiled.testSolution(Pathfinder.solve(tiled)));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testTiled_pagesOnDemand() throws IOException {
+        int size = 2048;
+        // Streams a huge open maze row by row, with the keys near the start
+        Iterator<String> rows = new Iterator<String>() {
+            int row = 0;
+
+            @Override
+            public boolean hasNext() {
+                return row < size;
+            }
+
+            @Override
+            public String next() {
+                char[] tiles = new char[size];
+                Arrays.fill(tiles, (row == 0 || row == size - 1) ? 'X' : '.');
+                tiles[0] = tiles[size - 1] = 'X';
+                if (row == 10) {
+                    tiles[10] = 'I';
+                    tiles[40] = '1';
+                } else if (row == 50) {
+                    tiles[20] = '2';
+                    tiles[60] = '3';
+                }
+                row++;
+                return new String(tiles);
+            }
+        };
+        Path file = Files.createTempFile("maze", ".tiles");
+        TiledMazeProblem.write(file, rows, null, 64);
+        try (TiledMazeProblem tiled = TiledMazeProblem.open(file, 16)) {
+            assertArrayEquals(new int[] {1, 130}, tiled.testSolution(Pathfinder.solve(tiled)));
+            assertEquals(1024, tiled.tileCount());
+            assertTrue(tiled.faults() <= 16);
+            assertEquals(0, tiled.evictions());
+            assertTrue(tiled.hits() > tiled.faults());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testTiled_rejectsBadFiles() throws IOException {
+        Path file = Files.createTempFile("maze", ".tiles");
+        try {
+            Files.write(file, new byte[64]);
+            TiledMazeProblem.open(file, 1).close();
+            fail("Opened a file that is not a tiled maze");
+        } catch (IOException e) {
+            // Expected
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        try {
+            TiledMazeProblem.write(file, new String[] {"XXX", "XIZ", "XXX"}, null, 2);
+            fail("Wrote an invalid maze");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        } finally {
+            assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+        }
+    }
+
+}
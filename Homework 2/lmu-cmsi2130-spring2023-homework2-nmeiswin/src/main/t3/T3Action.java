@@ -1,7 +1,5 @@
 package main.t3;
 
-import java.util.Objects;
-
 /**
  * T3Actions are agent-specified manipulations on the game board such that they
  * indicate which column, row, (both 0 indexed), and number / move they would
@@ -10,10 +8,27 @@ import java.util.Objects;
  * 
  * [!] Note: Implements the Comparable interface such that T3Actions are ordered
  * according to the tiebreaking criteria specified in the spec!
+ * 
+ * T3Actions are immutable, so every action on boards up to the largest
+ * T3Rules allow is created once and shared: T3Action.of returns the shared
+ * instance, and move generation and search use it rather than allocating.
  */
 public class T3Action implements Comparable<T3Action> {
     
-    private int col, row, move;
+    private final int col, row, move;
+    
+    // Every action within the largest board and numbers, at [(col * 8 + row) * 65 + move]
+    private static final int MAX_SIZE = 8, MAX_MOVE = 64;
+    private static final T3Action[] ACTIONS = new T3Action[MAX_SIZE * MAX_SIZE * (MAX_MOVE + 1)];
+    static {
+        for (int col = 0; col < MAX_SIZE; col++) {
+            for (int row = 0; row < MAX_SIZE; row++) {
+                for (int move = 0; move <= MAX_MOVE; move++) {
+                    ACTIONS[(col * MAX_SIZE + row) * (MAX_MOVE + 1) + move] = new T3Action(col, row, move);
+                }
+            }
+        }
+    }
     
     /**
      * Constructs a new T3Action with the given column,
@@ -29,6 +44,21 @@ public class T3Action implements Comparable<T3Action> {
         this.move = move;
     }
     
+    /**
+     * Returns the shared T3Action with the given column, row, and move number,
+     * creating one only if it lies outside every board T3Rules allow.
+     * @param col 0-index column to place a number within
+     * @param row 0-index row to place a number within
+     * @param move Number to place in the desired coordinates
+     * @return The equivalent of new T3Action(col, row, move).
+     */
+    public static T3Action of(int col, int row, int move) {
+        if (col < 0 || col >= MAX_SIZE || row < 0 || row >= MAX_SIZE || move < 0 || move > MAX_MOVE) {
+            return new T3Action(col, row, move);
+        }
+        return ACTIONS[(col * MAX_SIZE + row) * (MAX_MOVE + 1) + move];
+    }
+    
     /**
      * Returns the column of this action.
      * 
@@ -89,7 +119,8 @@ public class T3Action implements Comparable<T3Action> {
     
     @Override
     public int hashCode () {
-        return Objects.hash(this.col, this.row, this.move);
+        // Same as Objects.hash(col, row, move), without boxing
+        return 31 * (31 * (31 + this.col) + this.row) + this.move;
     }
     
 }
@@ -0,0 +1,41 @@
+package main.t3;
+
+/**
+ * Anything that can play T3: given a state, an agent chooses its action. T3Player
+ * searches exhaustively or to a depth, while T3MonteCarloPlayer samples random
+ * playouts, which scales to variants far too big to search.
+ *
+ * [!] Agents that search on several threads own a pool of them, which close()
+ * shuts down; whoever creates such an agent should close it when done with it.
+ */
+@FunctionalInterface
+public interface T3Agent extends AutoCloseable {
+
+    /**
+     * Chooses the action to take from the given state.
+     *
+     * @param state
+     *            The state to move from, neither won nor full.
+     * @return A legal action from the state.
+     */
+    T3Action choose (T3State state);
+
+    /**
+     * Returns the work done by the last choose(), for measuring search speed.
+     *
+     * @return The number of positions searched or played out, 0 if the agent
+     *         does not count them.
+     */
+    default long getNodes () {
+        return 0;
+    }
+
+    /**
+     * Releases the threads the agent searches on, if it has any, after which it
+     * must not choose again.
+     */
+    @Override
+    default void close () {
+    }
+
+}
@@ -0,0 +1,614 @@
+package main.t3;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Mutable representation of a T3 board for the search engine, for any T3Rules:
+ * actions are applied and undone in place, so searching allocates no boards at
+ * all. The sum and fill count of every row, column, and diagonal, the number of
+ * winning lines, and the keys of the board and of its seven rotations and
+ * reflections are all updated incrementally, so checking for a win or a full
+ * board, or finding the canonical key for a transposition table, takes constant
+ * time.
+ *
+ * [!] Keys: for rules that pack (see T3Rules.isPacked), cell i holds its number
+ * in the bits starting at i * (bits per number), 0 meaning open, with the bit
+ * above the cells set when it is the odds player's turn. The standard game
+ * packs into 28 bits: 3 per cell and bit 27 for the turn. Larger variants are
+ * keyed by Zobrist hashing instead.
+ *
+ * Legal actions are generated lazily as int codes, (col * size + row) * k + n
+ * for placing the mover's n-th smallest number, k being the most numbers a
+ * player has, so that ascending codes follow the tiebreaking order of
+ * T3Actions: nextAction steps a cursor through them, and apply and undo accept
+ * codes directly, so no T3Action need be created for a child that is pruned.
+ *
+ * Rotations and reflections of a board are equivalent positions; key(symmetry),
+ * canonicalKey(), and transform / restore relate a board and its actions to
+ * each of its eight variants.
+ */
+public class T3Board {
+
+    // Private Fields
+    // -----------------------------------------------------------------------------
+    private final T3Rules rules;
+    private final int size, numbers;
+    // Numbers placed, by row-major cell (row * size + col), 0 for open
+    private final int[] cells;
+    // Per line: its sum, plus its count of filled cells times FILLED
+    private final int[] lines;
+    private final int fullWin;
+    private int wins, filled;
+    private boolean oddsTurn;
+    // The key of the board as moved by each symmetry, the identity's first
+    private final long[] keys;
+
+    // Constants
+    // -----------------------------------------------------------------------------
+    private static final int FILLED = 1 << 16;
+
+    // Constructors
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Creates an empty board for the given rules.
+     *
+     * @param rules
+     *            The variant being played.
+     * @param isOddsTurn
+     *            Whether or not the odds player is next to act.
+     */
+    T3Board (T3Rules rules, boolean isOddsTurn) {
+        this.rules = rules;
+        this.size = rules.size();
+        this.numbers = rules.numbers();
+        this.cells = new int[rules.cells()];
+        this.lines = new int[rules.lines().length];
+        this.fullWin = size * FILLED + rules.winTarget();
+        this.oddsTurn = isOddsTurn;
+        this.keys = new long[T3Rules.SYMMETRIES];
+        Arrays.fill(keys, isOddsTurn ? rules.turnKey() : 0);
+    }
+
+    /**
+     * Creates a board holding the given grid.
+     *
+     * @param rules
+     *            The variant being played.
+     * @param isOddsTurn
+     *            Whether or not the odds player is next to act.
+     * @param state
+     *            The grid of numbers placed, indexed [row][col], 0 for open.
+     * @throws IllegalArgumentException
+     *             if the grid is not size x size or holds a number out of range
+     */
+    T3Board (T3Rules rules, boolean isOddsTurn, int[][] state) {
+        this(rules, isOddsTurn);
+        if (state.length != size) {
+            throw new IllegalArgumentException("T3 boards must be " + size + " x " + size);
+        }
+        for (int r = 0; r < size; r++) {
+            if (state[r].length != size) {
+                throw new IllegalArgumentException("T3 boards must be " + size + " x " + size);
+            }
+            for (int c = 0; c < size; c++) {
+                if (state[r][c] < 0 || state[r][c] > rules.maxMove()) {
+                    throw new IllegalArgumentException("Cannot place " + state[r][c] + " on a T3 board");
+                }
+                if (state[r][c] != 0) {
+                    place(r * size + c, state[r][c]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a board for packing rules from its key.
+     *
+     * @param rules
+     *            The variant being played, which must pack.
+     * @param key
+     *            The packed board, as returned by key().
+     */
+    T3Board (T3Rules rules, long key) {
+        this(rules, (key & rules.turnKey()) != 0);
+        int cellBits = Long.numberOfTrailingZeros(rules.cellKey(1, 1));
+        for (int cell = 0; cell < cells.length; cell++) {
+            int move = (int) (key >>> (cellBits * cell) & ((1L << cellBits) - 1));
+            if (move != 0) {
+                place(cell, move);
+            }
+        }
+    }
+
+    /**
+     * Creates a copy of the given board.
+     *
+     * @param other
+     *            The board to copy.
+     */
+    T3Board (T3Board other) {
+        this.rules = other.rules;
+        this.size = other.size;
+        this.numbers = other.numbers;
+        this.cells = other.cells.clone();
+        this.lines = other.lines.clone();
+        this.fullWin = other.fullWin;
+        this.wins = other.wins;
+        this.filled = other.filled;
+        this.oddsTurn = other.oddsTurn;
+        this.keys = other.keys.clone();
+    }
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * @return The rules of the variant this board is played under.
+     */
+    public T3Rules getRules () {
+        return this.rules;
+    }
+
+    /**
+     * Places the given action's number and passes the turn. The action is assumed
+     * to be legal; see T3State.isValidAction.
+     *
+     * @param act
+     *            The action to apply.
+     */
+    public void apply (T3Action act) {
+        place(act.row() * size + act.col(), act.move());
+        passTurn();
+    }
+
+    /**
+     * Places the number of the given action code and passes the turn. The code is
+     * assumed to be legal, e.g., as returned by nextAction.
+     *
+     * @param action
+     *            The action code to apply.
+     */
+    public void apply (int action) {
+        place(cellOf(action), moveOf(action));
+        passTurn();
+    }
+
+    /**
+     * Reverts the given action code, which must be the last one applied.
+     *
+     * @param action
+     *            The action code to undo.
+     */
+    public void undo (int action) {
+        passTurn();
+        remove(cellOf(action));
+    }
+
+    /**
+     * Reverts the given action, which must be the last one applied.
+     *
+     * @param act
+     *            The action to undo.
+     */
+    public void undo (T3Action act) {
+        passTurn();
+        remove(act.row() * size + act.col());
+    }
+
+    /**
+     * Returns the first legal action code at or after the given one, so that
+     * looping from nextAction(0) through nextAction(code + 1) visits the legal
+     * actions in tiebreaking order.
+     *
+     * @param from
+     *            The code to start from, 0 for the first action.
+     * @return The next legal action code, or -1 if there is none.
+     */
+    public int nextAction (int from) {
+        // With an odd largest number, evens have one number fewer than odds
+        int mine = oddsTurn ? numbers : rules.maxMove() / 2;
+        for (int slot = from / numbers; slot < cells.length; slot++) {
+            if (cells[cellOf(slot * numbers)] == 0) {
+                int action = Math.max(from, slot * numbers);
+                if (action < slot * numbers + mine) {
+                    return action;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Picks a legal action code uniformly at random, e.g., for a random playout,
+     * drawing cells until an open one comes up so that no actions are listed.
+     *
+     * @param rng
+     *            The source of randomness.
+     * @return A random legal action code, or -1 if the board is full.
+     */
+    public int randomAction (SplittableRandom rng) {
+        if (isFull()) {
+            return -1;
+        }
+        int mine = oddsTurn ? numbers : rules.maxMove() / 2;
+        int cell;
+        do {
+            cell = rng.nextInt(cells.length);
+        } while (cells[cell] != 0);
+        return slotOf(cell) * numbers + rng.nextInt(mine);
+    }
+
+    /**
+     * Returns the T3Action of the given code for the player to move.
+     *
+     * @param action
+     *            The action code.
+     * @return The equivalent T3Action.
+     */
+    public T3Action action (int action) {
+        int cell = cellOf(action);
+        return T3Action.of(cell % size, cell / size, moveOf(action));
+    }
+
+    /**
+     * Returns the row-major cell (row * size + col) of the given action code.
+     *
+     * @param action
+     *            The action code.
+     * @return The cell it places a number in.
+     */
+    int cellOf (int action) {
+        int slot = action / numbers;
+        return slot % size * size + slot / size;
+    }
+
+    /**
+     * Returns the column-major position of the given row-major cell, the order in
+     * which action codes visit cells.
+     *
+     * @param cell
+     *            The cell, row * size + col.
+     * @return Its position, col * size + row.
+     */
+    int slotOf (int cell) {
+        return cell % size * size + cell / size;
+    }
+
+    /**
+     * Returns the number at the given position.
+     *
+     * @param col
+     *            0-index column of the cell.
+     * @param row
+     *            0-index row of the cell.
+     * @return The number placed there, 0 if it is open.
+     */
+    public int get (int col, int row) {
+        return cells[row * size + col];
+    }
+
+    /**
+     * @return Whether or not the odds player is next to act.
+     */
+    public boolean isOddsTurn () {
+        return this.oddsTurn;
+    }
+
+    /**
+     * @return The number of cells with a number placed in them.
+     */
+    public int filled () {
+        return this.filled;
+    }
+
+    /**
+     * Returns the key of this board: its packing, which uniquely identifies its
+     * cells and turn, or for larger variants its Zobrist hash.
+     *
+     * @return The board's key.
+     */
+    public long key () {
+        return keys[0];
+    }
+
+    /**
+     * Returns the key of this board as seen after the given rotation or
+     * reflection.
+     *
+     * @param symmetry
+     *            The symmetry to apply, from 0 (the identity) to 7.
+     * @return The transformed board's key.
+     */
+    public long key (int symmetry) {
+        return keys[symmetry];
+    }
+
+    /**
+     * Returns the symmetry that maps this board to its canonical form: the
+     * variant with the smallest key, the first such symmetry if several give it.
+     *
+     * @return The canonicalizing symmetry.
+     */
+    public int canonicalSymmetry () {
+        int best = 0;
+        long bestKey = keys[0];
+        for (int s = 1; s < T3Rules.SYMMETRIES; s++) {
+            long variant = keys[s];
+            if (variant < bestKey) {
+                best = s;
+                bestKey = variant;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the key of this board's canonical form, shared by every rotation and
+     * reflection of the board.
+     *
+     * @return The canonical board's key.
+     */
+    public long canonicalKey () {
+        long bestKey = keys[0];
+        for (int s = 1; s < T3Rules.SYMMETRIES; s++) {
+            bestKey = Math.min(bestKey, keys[s]);
+        }
+        return bestKey;
+    }
+
+    /**
+     * Determines if this board is its own canonical form, stopping at the first
+     * variant found to be smaller.
+     *
+     * @return true if key() equals canonicalKey(), false otherwise
+     */
+    public boolean isCanonical () {
+        for (int s = 1; s < T3Rules.SYMMETRIES; s++) {
+            if (keys[s] < keys[0]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the symmetries that leave this board unchanged, so that actions they
+     * map onto each other lead to equivalent boards.
+     *
+     * @return A bitmask holding bit s for each such symmetry s, always including 1
+     *         for the identity.
+     */
+    public int stabilizer () {
+        int symmetries = 1;
+        for (int s = 1; s < T3Rules.SYMMETRIES; s++) {
+            symmetries |= (keys[s] == keys[0]) ? 1 << s : 0;
+        }
+        return symmetries;
+    }
+
+    /**
+     * Maps an action on this board onto the board transformed by the given
+     * symmetry, e.g., onto the canonical board.
+     *
+     * @param act
+     *            The action in this board's orientation.
+     * @param symmetry
+     *            The symmetry to apply.
+     * @return The equivalent action on the transformed board.
+     */
+    public T3Action transform (T3Action act, int symmetry) {
+        int to = rules.transformCell(act.row() * size + act.col(), symmetry);
+        return T3Action.of(to % size, to / size, act.move());
+    }
+
+    /**
+     * Maps an action on a transformed board back to the original orientation,
+     * undoing transform.
+     *
+     * @param act
+     *            The action on the board transformed by the given symmetry.
+     * @param symmetry
+     *            The symmetry that was applied.
+     * @return The equivalent action in the original orientation.
+     */
+    public T3Action restore (T3Action act, int symmetry) {
+        int from = rules.restoreCell(act.row() * size + act.col(), symmetry);
+        return T3Action.of(from % size, from / size, act.move());
+    }
+
+    /**
+     * Maps an action code on this board onto the board transformed by the given
+     * symmetry, as transform does for T3Actions.
+     *
+     * @param action
+     *            The action code in this board's orientation.
+     * @param symmetry
+     *            The symmetry to apply.
+     * @return The equivalent action code on the transformed board.
+     */
+    public int transform (int action, int symmetry) {
+        return slotOf(rules.transformCell(cellOf(action), symmetry)) * numbers + action % numbers;
+    }
+
+    /**
+     * Maps an action code on a transformed board back to the original
+     * orientation, undoing transform.
+     *
+     * @param action
+     *            The action code on the board transformed by the given symmetry.
+     * @param symmetry
+     *            The symmetry that was applied.
+     * @return The equivalent action code in the original orientation.
+     */
+    public int restore (int action, int symmetry) {
+        return slotOf(rules.restoreCell(cellOf(action), symmetry)) * numbers + action % numbers;
+    }
+
+    /**
+     * Counts the lines that the given player could win on with their next number:
+     * those with one open cell, needing a number of the player's parity within
+     * the rules' range.
+     *
+     * @param odds
+     *            Whether to count the odds player's lines or the evens player's.
+     * @return The number of lines threatened by the player.
+     */
+    public int threats (boolean odds) {
+        int threats = 0;
+        for (int line : lines) {
+            threats += (neededBy(line, odds) > 0) ? 1 : 0;
+        }
+        return threats;
+    }
+
+    /**
+     * Finds the open cells where the given player could complete a line summing
+     * to the win target with one of their numbers, e.g., the cells the player to
+     * move must fill to block their opponent.
+     *
+     * @param odds
+     *            Whether to find the odds player's winning cells or the evens
+     *            player's.
+     * @return A bitmask holding bit cell for each such cell (row * size + col).
+     */
+    public long threatCells (boolean odds) {
+        long threatened = 0;
+        int[][] cellsOf = rules.lines();
+        for (int l = 0; l < lines.length; l++) {
+            int need = neededBy(lines[l], odds);
+            if (need > 0) {
+                threatened |= 1L << openCell(cellsOf[l]);
+            }
+        }
+        return threatened;
+    }
+
+    /**
+     * Finds an action that wins at once for the player to move, if there is one.
+     *
+     * @return The lowest winning action code, or -1 if there is none.
+     */
+    public int winningAction () {
+        int best = -1;
+        int[][] cellsOf = rules.lines();
+        for (int l = 0; l < lines.length; l++) {
+            int need = neededBy(lines[l], oddsTurn);
+            if (need > 0) {
+                int action = slotOf(openCell(cellsOf[l])) * numbers + (need - (oddsTurn ? 1 : 2)) / 2;
+                best = (best < 0) ? action : Math.min(best, action);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Determines if any full row, column, or diagonal sums to the win target,
+     * making this a win for whoever moved last.
+     *
+     * @return true if the board is a winning terminal, false otherwise
+     */
+    public boolean isWin () {
+        return wins > 0;
+    }
+
+    /**
+     * Determines if the board is full without a win.
+     *
+     * @return true if a tie game, false otherwise
+     */
+    public boolean isTie () {
+        return isFull() && !isWin();
+    }
+
+    /**
+     * @return Whether or not every cell has a number placed in it.
+     */
+    public boolean isFull () {
+        return filled == cells.length;
+    }
+
+    /**
+     * Determines if this board holds the same numbers and turn as another.
+     *
+     * @param other
+     *            The board compared.
+     * @return true if the boards are the same position, false otherwise
+     */
+    boolean samePosition (T3Board other) {
+        return rules.equals(other.rules) && oddsTurn == other.oddsTurn && Arrays.equals(cells, other.cells);
+    }
+
+    /**
+     * @return The number placed by the given action code for the player to move.
+     */
+    private int moveOf (int action) {
+        return (oddsTurn ? 1 : 2) + 2 * (action % numbers);
+    }
+
+    /**
+     * @return The number that would complete the given line (its sum plus its
+     *         fill count times FILLED) to win for the given player, or 0 if the
+     *         line is not one cell short or no number of theirs would do.
+     */
+    private int neededBy (int line, boolean odds) {
+        int need = rules.winTarget() - line % FILLED;
+        boolean usable = need >= 1 && need <= rules.maxMove() && (need % 2 == 1) == odds;
+        return (line / FILLED == size - 1 && usable) ? need : 0;
+    }
+
+    /**
+     * @return The first open cell of the given line.
+     */
+    private int openCell (int[] line) {
+        for (int cell : line) {
+            if (cells[cell] == 0) {
+                return cell;
+            }
+        }
+        throw new IllegalStateException("T3 line is full");
+    }
+
+    /**
+     * Places a number in an open cell, updating its lines and the key.
+     */
+    private void place (int cell, int move) {
+        cells[cell] = move;
+        filled++;
+        for (int s = 0; s < T3Rules.SYMMETRIES; s++) {
+            keys[s] ^= rules.variantKey(cell, move, s);
+        }
+        for (int line : rules.linesThrough(cell)) {
+            lines[line] += FILLED + move;
+            wins += (lines[line] == fullWin) ? 1 : 0;
+        }
+    }
+
+    /**
+     * Clears a filled cell, updating its lines and the key.
+     */
+    private void remove (int cell) {
+        int move = cells[cell];
+        for (int line : rules.linesThrough(cell)) {
+            wins -= (lines[line] == fullWin) ? 1 : 0;
+            lines[line] -= FILLED + move;
+        }
+        for (int s = 0; s < T3Rules.SYMMETRIES; s++) {
+            keys[s] ^= rules.variantKey(cell, move, s);
+        }
+        filled--;
+        cells[cell] = 0;
+    }
+
+    /**
+     * Passes the turn to the other player.
+     */
+    private void passTurn () {
+        oddsTurn = !oddsTurn;
+        for (int s = 0; s < T3Rules.SYMMETRIES; s++) {
+            keys[s] ^= rules.turnKey();
+        }
+    }
+
+}
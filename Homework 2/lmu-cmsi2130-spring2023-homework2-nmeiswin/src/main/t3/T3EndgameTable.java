@@ -0,0 +1,415 @@
+package main.t3;
+
+import java.io.IOException;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+/**
+ * Complete solution of standard T3 (T3Rules.STANDARD): the exact value and best action of every state
+ * reachable from an empty board, whoever moves first, computed once by
+ * retrograde analysis and saved to a file that is memory-mapped for play.
+ * Rotations and reflections of a board share one entry, so the file holds only
+ * canonical boards (see T3Board.canonicalKey), roughly an eighth of the
+ * states. A lookup canonicalizes the board and binary searches the mapped
+ * keys, so a T3Player using the table answers in constant time.
+ *
+ * [!] Solving works on every state, not just canonical ones. Since no line can
+ * sum to WIN_TARGET before it is full, every board without a win whose odd and
+ * even counts fit the player to move is reachable. Each such state gets a fixed
+ * slot in a dense array: grouped by pattern (which cells hold odds, evens, or
+ * nothing) and turn, with one slot for each way of choosing the numbers in the
+ * pattern's filled cells, so a child's slot is computed rather than searched.
+ *
+ * File layout (big-endian): int MAGIC, int VERSION, int count, then the count
+ * packed canonical boards in ascending order, then one int entry per board.
+ * An entry holds the value for the player to move, plus one, in bits 27-28,
+ * and in bits 0-26 the candidate actions on the canonical board: the immediate
+ * wins if there are any, otherwise every action of maximal value, as bit
+ * (row * 3 + col) * 3 + n for placing the mover's n-th smallest number. Mapped
+ * back to the board looked up, the first candidate in tiebreaking order is
+ * exactly the action T3Player.choose makes.
+ */
+public class T3EndgameTable {
+
+    // Private Constants
+    // -----------------------------------------------------------------------------
+    private static final int MAGIC = 0x54334547; // "T3EG"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 12;
+    private static final int CANDIDATES = (1 << 27) - 1;
+    private static final T3Rules RULES = T3Rules.STANDARD;
+    private static final int SIZE = RULES.size(), CELLS = RULES.cells();
+    // Powers of three, and the number of cell patterns of empty / odd / even
+    private static final int[] POW3 = new int[CELLS + 1];
+    private static final int PATTERNS;
+    static {
+        POW3[0] = 1;
+        for (int i = 1; i <= CELLS; i++) {
+            POW3[i] = 3 * POW3[i - 1];
+        }
+        PATTERNS = POW3[CELLS];
+    }
+    // First slot of each pattern's states, at [pattern * 2] with odds to move and
+    // [pattern * 2 + 1] with evens to move, -1 where there are none
+    private static final int[] OFFSETS = new int[2 * PATTERNS];
+    private static final int SLOTS = layout();
+    // The lines through each cell
+    private static final int[][][] LINES_THROUGH = new int[CELLS][][];
+    static {
+        for (int cell = 0; cell < CELLS; cell++) {
+            final int c = cell;
+            LINES_THROUGH[cell] = Arrays.stream(RULES.lines())
+                    .filter(line -> line[0] == c || line[1] == c || line[2] == c)
+                    .toArray(int[][]::new);
+        }
+    }
+
+    // Private Fields
+    // -----------------------------------------------------------------------------
+    private final IntBuffer keys, entries;
+    private final int count;
+
+    // Constructors
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Creates a table over the given file contents.
+     *
+     * @param data
+     *            The whole table file, positioned at its start.
+     * @throws IOException
+     *             if the data is not an endgame table
+     */
+    private T3EndgameTable (ByteBuffer data) throws IOException {
+        if (data.remaining() < HEADER_BYTES || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+            throw new IOException("Not a T3 endgame table");
+        }
+        this.count = data.getInt(8);
+        if (count < 0 || data.remaining() != HEADER_BYTES + 8L * count) {
+            throw new IOException("Truncated T3 endgame table");
+        }
+        IntBuffer body = data.position(HEADER_BYTES).slice().asIntBuffer();
+        this.keys = body.slice().limit(count);
+        this.entries = body.position(count).slice();
+    }
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Maps an endgame table file, as written by write, into memory.
+     *
+     * @param file
+     *            The table file.
+     * @return The mapped table.
+     * @throws IOException
+     *             if the file cannot be read or is not an endgame table
+     */
+    public static T3EndgameTable open (Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid once the channel is closed
+            return new T3EndgameTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Solves every reachable T3 state and writes the resulting table to the given
+     * file, replacing it if it exists.
+     *
+     * @param file
+     *            Where to write the table.
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public static void write (Path file) throws IOException {
+        long[] solved = solve();
+        ByteBuffer data = ByteBuffer.allocate(HEADER_BYTES + 8 * solved.length);
+        data.putInt(MAGIC).putInt(VERSION).putInt(solved.length);
+        for (long state : solved) {
+            data.putInt((int) (state >>> 32));
+        }
+        for (long state : solved) {
+            data.putInt((int) state);
+        }
+        Files.write(file, data.array());
+    }
+
+    /**
+     * @return The number of canonical states in the table.
+     */
+    public int size () {
+        return this.count;
+    }
+
+    /**
+     * Determines if the given state is in the table: a standard game's state,
+     * reachable from an empty board, and neither won nor full.
+     *
+     * @param state
+     *            The state to look up.
+     * @return true if the table holds the state, false otherwise
+     */
+    public boolean contains (T3State state) {
+        T3Board board = state.getBoard();
+        return find(board, board.canonicalSymmetry()) >= 0;
+    }
+
+    /**
+     * Returns the exact minimax value of the given state.
+     *
+     * @param state
+     *            The state to look up.
+     * @return 1 if the player to move wins with best play, -1 if they lose, and 0
+     *         if the game is a tie.
+     * @throws IllegalArgumentException
+     *             if the state is not in the table
+     */
+    public int value (T3State state) {
+        T3Board board = state.getBoard();
+        int index = find(board, board.canonicalSymmetry());
+        if (index < 0) {
+            throw new IllegalArgumentException("State is not in the endgame table:\n" + state);
+        }
+        return (entries.get(index) >>> 27) - 1;
+    }
+
+    /**
+     * Returns the action that T3Player.choose would make from the given state.
+     *
+     * @param state
+     *            The state to look up.
+     * @return The best action, or null if the state is not in the table.
+     */
+    public T3Action bestAction (T3State state) {
+        T3Board board = state.getBoard();
+        int symmetry = board.canonicalSymmetry(), index = find(board, symmetry);
+        if (index < 0) {
+            return null;
+        }
+        // The first candidate, in this board's tiebreaking order, is the best
+        int candidates = entries.get(index) & CANDIDATES, first = board.isOddsTurn() ? 1 : 2;
+        for (int col = 0; col < SIZE; col++) {
+            for (int row = 0; row < SIZE; row++) {
+                int canonical = RULES.transformCell(row * SIZE + col, symmetry);
+                for (int number = 0; number < 3; number++) {
+                    if ((candidates & 1 << (canonical * 3 + number)) != 0) {
+                        return T3Action.of(col, row, first + 2 * number);
+                    }
+                }
+            }
+        }
+        throw new IllegalStateException("Corrupt T3 endgame table entry");
+    }
+
+    /**
+     * Tool that solves T3 and writes the table to the path given as the only
+     * argument.
+     *
+     * @param args
+     *            The path of the table file to write.
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public static void main (String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: T3EndgameTable <table file>");
+            System.exit(1);
+        }
+        Path file = Paths.get(args[0]);
+        write(file);
+        System.out.println("Solved " + open(file).size() + " canonical states into " + file);
+    }
+
+    /**
+     * @return The index in the table of the given board transformed by its
+     *         canonicalizing symmetry, or -1 if it is absent.
+     */
+    private int find (T3Board board, int symmetry) {
+        if (!RULES.equals(board.getRules())) {
+            return -1;
+        }
+        long key = board.key(symmetry);
+        int lo = 0, hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1, midKey = keys.get(mid);
+            if (midKey < key) {
+                lo = mid + 1;
+            } else if (midKey > key) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Assigns each pattern and turn its first slot in OFFSETS.
+     *
+     * @return The total number of slots.
+     */
+    private static int layout () {
+        int slots = 0;
+        for (int pattern = 0; pattern < PATTERNS; pattern++) {
+            int odds = 0, evens = 0;
+            for (int i = 0; i < CELLS; i++) {
+                int kind = pattern / POW3[i] % 3;
+                odds += (kind == 1) ? 1 : 0;
+                evens += (kind == 2) ? 1 : 0;
+            }
+            for (int turn = 0; turn < 2; turn++) {
+                // Whoever moves next has placed no more numbers than the other
+                // player, and a full board has no one to move
+                int mine = (turn == 0) ? odds : evens, theirs = (turn == 0) ? evens : odds;
+                boolean reachable = odds + evens < CELLS && (mine == theirs || mine + 1 == theirs);
+                OFFSETS[2 * pattern + turn] = reachable ? slots : -1;
+                slots += reachable ? POW3[odds + evens] : 0;
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Solves every slot, from the fullest boards back to the empty ones so that
+     * every child is solved before its parent, keeping the entries of canonical
+     * boards.
+     *
+     * @return Each canonical board's packed board in its high 32 bits and entry in
+     *         its low 32 bits, in ascending order.
+     */
+    private static long[] solve () {
+        // Each slot's value for the player to move, plus two, 0 if won
+        byte[] values = new byte[SLOTS];
+        long[][] canonical = new long[PATTERNS][];
+        for (int layer = CELLS - 1; layer >= 0; layer--) {
+            // Boards with the same number of cells filled never depend on each
+            // other, so each layer's patterns are solved in parallel
+            final int filled = layer;
+            IntStream.range(0, PATTERNS).parallel().forEach(pattern -> {
+                int occupied = occupied(pattern);
+                if (Integer.bitCount(occupied) != filled) {
+                    return;
+                }
+                int[] cells = new int[CELLS];
+                LongStream.Builder found = LongStream.builder();
+                for (int turn = 0; turn < 2; turn++) {
+                    int offset = OFFSETS[2 * pattern + turn];
+                    for (int rank = 0; offset >= 0 && rank < POW3[filled]; rank++) {
+                        int entry = solveSlot(pattern, occupied, turn, rank, cells, values);
+                        if (entry < 0) {
+                            continue;
+                        }
+                        values[offset + rank] = (byte) ((entry >>> 27) + 1);
+                        long key = canonicalKey(cells, turn);
+                        if (key >= 0) {
+                            found.add(key << 32 | entry);
+                        }
+                    }
+                }
+                canonical[pattern] = found.build().toArray();
+            });
+        }
+        return Arrays.stream(canonical).filter(Objects::nonNull).flatMapToLong(LongStream::of).sorted().toArray();
+    }
+
+    /**
+     * Solves one slot whose children are all solved, finding the actions that
+     * T3Player.choose would pick among: the immediate wins if there are any,
+     * otherwise those of maximal value.
+     *
+     * @return The slot's entry, as stored in the file, or -1 if its board is won.
+     */
+    private static int solveSlot (int pattern, int occupied, int turn, int rank, int[] cells, byte[] values) {
+        // Unpack the board, the j-th filled cell holding the j-th base-3 digit of rank
+        for (int i = 0, j = 0; i < CELLS; i++) {
+            int kind = pattern / POW3[i] % 3;
+            cells[i] = (kind == 0) ? 0 : kind + 2 * (rank / POW3[j++] % 3);
+        }
+        for (int[] line : RULES.lines()) {
+            if (cells[line[0]] + cells[line[1]] + cells[line[2]] == RULES.winTarget()) {
+                return -1;
+            }
+        }
+        boolean lastMove = Integer.bitCount(occupied) + 1 == CELLS;
+        int best = 0, bestValue = Integer.MIN_VALUE, wins = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            if (cells[cell] != 0) {
+                continue;
+            }
+            // The child's digits: this cell's goes between those before and after it
+            int before = Integer.bitCount(occupied & ((1 << cell) - 1));
+            int low = rank % POW3[before], high = rank / POW3[before] * POW3[before + 1];
+            int winning = winningMoves(cells, cell);
+            int child = (lastMove) ? -1 : OFFSETS[2 * (pattern + (turn + 1) * POW3[cell]) + 1 - turn] + high + low;
+            for (int number = 0; number < 3; number++) {
+                int value, bit = 1 << (cell * 3 + number);
+                if ((winning & 1 << (turn + 1 + 2 * number)) != 0) {
+                    value = 1;
+                    wins |= bit;
+                } else if (lastMove) {
+                    value = 0;
+                } else {
+                    value = 2 - values[child + number * POW3[before]];
+                }
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = 0;
+                }
+                best |= (value == bestValue) ? bit : 0;
+            }
+        }
+        return (wins != 0 ? wins : best) | (bestValue + 1) << 27;
+    }
+
+    /**
+     * @return A bitmask of the numbers that, placed in the given empty cell,
+     *         complete a line summing to WIN_TARGET.
+     */
+    private static int winningMoves (int[] cells, int cell) {
+        int moves = 0;
+        for (int[] line : LINES_THROUGH[cell]) {
+            int a = cells[line[0]], b = cells[line[1]], c = cells[line[2]];
+            // The cell itself is empty, so a full line's sum is its other two
+            if ((a == 0 ? 1 : 0) + (b == 0 ? 1 : 0) + (c == 0 ? 1 : 0) == 1) {
+                int need = RULES.winTarget() - (a + b + c);
+                moves |= (need > 0 && need <= RULES.maxMove()) ? 1 << need : 0;
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * @return The packed board of the given cells and turn if it is canonical (see
+     *         T3Board.isCanonical), or -1 if one of its variants is smaller.
+     */
+    private static long canonicalKey (int[] cells, int turn) {
+        long[] variants = new long[T3Rules.SYMMETRIES];
+        Arrays.fill(variants, (turn == 0) ? RULES.turnKey() : 0);
+        for (int i = 0; i < CELLS; i++) {
+            for (int s = 0; cells[i] != 0 && s < T3Rules.SYMMETRIES; s++) {
+                variants[s] |= RULES.variantKey(i, cells[i], s);
+            }
+        }
+        for (int s = 1; s < T3Rules.SYMMETRIES; s++) {
+            if (variants[s] < variants[0]) {
+                return -1;
+            }
+        }
+        return variants[0];
+    }
+
+    /**
+     * @return A bitmask of the cells a pattern fills.
+     */
+    private static int occupied (int pattern) {
+        int mask = 0;
+        for (int i = 0; i < CELLS; i++) {
+            mask |= (pattern / POW3[i] % 3 != 0) ? 1 << i : 0;
+        }
+        return mask;
+    }
+
+}
@@ -0,0 +1,42 @@
+package main.t3;
+
+/**
+ * Heuristic score of a T3 position that a depth-limited search could not play
+ * out to the end, used by T3Player in place of calling such positions ties.
+ *
+ * [!] Scores are for the player to move on the given board, larger being
+ * better for them, and must lie strictly between -MAX_SCORE and MAX_SCORE, so
+ * that any won or lost position outranks every evaluated one.
+ */
+@FunctionalInterface
+public interface T3Evaluator {
+
+    // Constants
+    // -----------------------------------------------------------------------------
+    int MAX_SCORE = 1 << 20;
+
+    /**
+     * Scores every position as a tie, as a search without an evaluator does.
+     */
+    T3Evaluator NONE = board -> 0;
+
+    /**
+     * Scores a position by the lines the player to move could win on next, less
+     * those their opponent could.
+     */
+    T3Evaluator THREATS = board -> board.threats(board.isOddsTurn()) - board.threats(!board.isOddsTurn());
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Scores a position that is neither won nor full.
+     *
+     * @param board
+     *            The position to score, which must not be changed.
+     * @return The score for the player to move, between -MAX_SCORE and MAX_SCORE
+     *         exclusive.
+     */
+    int evaluate (T3Board board);
+
+}
@@ -0,0 +1,353 @@
+package main.t3;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * T3 agent using Monte Carlo Tree Search for variants too big to search
+ * exhaustively: rather than proving what each action is worth, it plays random
+ * games out from the state, steering more and more of them toward the actions
+ * that have been winning by the UCT rule, and chooses the action tried most.
+ *
+ * [!] Each playout adds one node to the tree, for the first action not yet
+ * tried along the path chosen by UCT, and counts its result as a win, a loss, or
+ * half a win for a tie for each player along the path. Playouts are run on a
+ * T3Board with random actions drawn in place, so they create no T3States or
+ * T3Actions.
+ *
+ * A search is bounded by a number of playouts, a time limit, or both. The tree
+ * is kept between moves: if the next choose() is from a state two moves down
+ * (after this player's move and the reply) that the tree has reached, the search
+ * resumes from that node with its statistics, and the rest is discarded. With
+ * several threads, each grows its own tree from the same state with its own
+ * random numbers (root parallelization), and the choice sums their visits.
+ * Such a player owns its pool of threads, and close() shuts it down.
+ */
+public class T3MonteCarloPlayer implements T3Agent {
+
+    // Constants
+    // -----------------------------------------------------------------------------
+    public static final double DEFAULT_EXPLORATION = Math.sqrt(2);
+    // Playouts run between checks of the clock
+    private static final int CLOCK_INTERVAL = 64;
+
+    // Private Fields
+    // -----------------------------------------------------------------------------
+    private final double exploration;
+    private final int playouts;
+    private final long moveNanos;
+    private final ForkJoinPool pool;
+    // One random stream and one tree for each thread
+    private final SplittableRandom[] rngs;
+    private final Node[] roots;
+    private T3Rules rules;
+    private long lastPlayouts;
+
+    // Constructors
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Creates a single-threaded player running the given number of playouts per
+     * move with the default exploration constant, sqrt(2).
+     *
+     * @param playouts
+     *            The number of playouts per choose(), at least 1.
+     * @param seed
+     *            The seed of the playouts' random numbers.
+     * @throws IllegalArgumentException
+     *             if playouts is less than 1
+     */
+    public T3MonteCarloPlayer (int playouts, long seed) {
+        this(DEFAULT_EXPLORATION, playouts, 0, 1, seed);
+    }
+
+    /**
+     * Creates a player with the given exploration constant and budget, searching
+     * on the given number of threads.
+     *
+     * @param exploration
+     *            The UCT exploration constant, larger to try more actions.
+     * @param playouts
+     *            The number of playouts per choose(), 0 for no limit.
+     * @param moveMillis
+     *            The time limit of each choose() in milliseconds, 0 for none.
+     * @param threads
+     *            The number of threads, each growing its own tree.
+     * @param seed
+     *            The seed of the playouts' random numbers.
+     * @throws IllegalArgumentException
+     *             if exploration, playouts, or moveMillis is negative, both
+     *             budgets are 0, or threads is less than 1
+     */
+    public T3MonteCarloPlayer (double exploration, int playouts, long moveMillis, int threads, long seed) {
+        if (!(exploration >= 0) || playouts < 0 || moveMillis < 0) {
+            throw new IllegalArgumentException("Monte Carlo players cannot have negative parameters");
+        }
+        if (playouts == 0 && moveMillis == 0) {
+            throw new IllegalArgumentException("Monte Carlo players need a playout or time limit");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Monte Carlo players must search on at least 1 thread");
+        }
+        this.exploration = exploration;
+        this.playouts = playouts;
+        this.moveNanos = moveMillis * 1_000_000;
+        this.pool = (threads == 1) ? null : new ForkJoinPool(threads);
+        this.rngs = new SplittableRandom[threads];
+        this.roots = new Node[threads];
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (int t = 0; t < threads; t++) {
+            rngs[t] = seeds.split();
+        }
+    }
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Chooses the action whose subtree the search visited most, breaking ties by
+     * col, then row, then move number in ascending order. Like T3Player, this
+     * player always takes an immediately winning move.
+     *
+     * @param state
+     *            The state to move from, neither won nor full.
+     * @return The most visited action.
+     */
+    @Override
+    public T3Action choose (T3State state) {
+        T3Board board = state.getBoard();
+        lastPlayouts = 0;
+        for (int action = board.nextAction(0); action >= 0; action = board.nextAction(action + 1)) {
+            board.apply(action);
+            boolean won = board.isWin();
+            board.undo(action);
+            if (won) {
+                return board.action(action);
+            }
+        }
+        if (!board.getRules().equals(rules)) {
+            rules = board.getRules();
+            Arrays.fill(roots, null);
+        }
+        for (int t = 0; t < roots.length; t++) {
+            roots[t] = reuse(roots[t], board);
+        }
+        long deadline = (moveNanos == 0) ? 0 : System.nanoTime() + moveNanos;
+        if (pool == null) {
+            lastPlayouts = grow(0, board, deadline, playouts);
+        } else {
+            List<Callable<Integer>> trees = new ArrayList<>();
+            for (int t = 0; t < roots.length; t++) {
+                // Split the playouts as evenly as possible between the trees
+                final int tree = t, budget = playouts / roots.length + (t < playouts % roots.length ? 1 : 0);
+                // A budget of 0 would mean no limit, so a tree left without a share sits out
+                if (playouts == 0 || budget > 0) {
+                    trees.add(() -> grow(tree, new T3Board(board), deadline, budget));
+                }
+            }
+            lastPlayouts = pool.invokeAll(trees).stream().mapToLong(T3MonteCarloPlayer::playoutsOf).sum();
+        }
+        return board.action(mostVisited(board));
+    }
+
+    /**
+     * @return The number of playouts run by the last choose(), across all threads.
+     */
+    public long getPlayouts () {
+        return this.lastPlayouts;
+    }
+
+    /**
+     * @return The number of playouts run by the last choose(), each of which adds
+     *         a node to the tree.
+     */
+    @Override
+    public long getNodes () {
+        return this.lastPlayouts;
+    }
+
+    /**
+     * Shuts down the threads of a multi-threaded player; a single-threaded player
+     * has none.
+     */
+    @Override
+    public void close () {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Runs playouts from the root of one tree until its budget or the deadline is
+     * reached, adding a node for each.
+     *
+     * @param tree
+     *            The index of the tree, and of its random numbers.
+     * @param board
+     *            The root board, not changed.
+     * @param deadline
+     *            The System.nanoTime() to stop at, 0 for none.
+     * @param budget
+     *            The number of playouts to run, 0 for no limit.
+     * @return The number of playouts run.
+     */
+    private int grow (int tree, T3Board board, long deadline, int budget) {
+        Node root = roots[tree];
+        SplittableRandom rng = rngs[tree];
+        int done = 0;
+        for (; budget == 0 || done < budget; done++) {
+            if (deadline != 0 && done % CLOCK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                break;
+            }
+            T3Board scratch = new T3Board(board);
+            Node node = root;
+            // Selection: follow UCT while every action of the node has been tried
+            while (node.untried < 0 && !node.children.isEmpty()) {
+                node = select(node);
+                scratch.apply(node.action);
+            }
+            // Expansion: try the node's next untried action, if it is not terminal
+            if (node.untried >= 0) {
+                int action = node.untried;
+                node.untried = scratch.nextAction(action + 1);
+                scratch.apply(action);
+                Node child = new Node(node, action, scratch);
+                node.children.add(child);
+                node = child;
+            }
+            // Simulation, then backpropagation, flipping the result at each ply
+            double result = playout(scratch, rng, node.oddsMoved);
+            for (Node n = node; n != null; n = n.parent) {
+                n.visits++;
+                n.wins += result;
+                result = 1 - result;
+            }
+        }
+        return done;
+    }
+
+    /**
+     * @return The child of the given node maximizing the UCT score, the first
+     *         such child if several do.
+     */
+    private Node select (Node node) {
+        double logVisits = Math.log(node.visits), bestScore = Double.NEGATIVE_INFINITY;
+        Node best = null;
+        for (Node child : node.children) {
+            double score = child.wins / child.visits + exploration * Math.sqrt(logVisits / child.visits);
+            if (score > bestScore) {
+                bestScore = score;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Plays random actions on the given board until the game ends.
+     *
+     * @param board
+     *            The board to play on, which is changed.
+     * @param rng
+     *            The source of the random actions.
+     * @param oddsMoved
+     *            Whether the result is for the odds player or the evens player.
+     * @return 1 if that player won, 0 if they lost, and 0.5 for a tie.
+     */
+    private static double playout (T3Board board, SplittableRandom rng, boolean oddsMoved) {
+        while (!board.isWin() && !board.isFull()) {
+            board.apply(board.randomAction(rng));
+        }
+        if (!board.isWin()) {
+            return 0.5;
+        }
+        // The winner made the last move, so the turn has passed to the loser
+        return (board.isOddsTurn() != oddsMoved) ? 1 : 0;
+    }
+
+    /**
+     * @return The node of the given tree holding the given board, if the tree
+     *         reached it within two moves, as its new root; otherwise a new root.
+     */
+    private static Node reuse (Node root, T3Board board) {
+        if (root != null) {
+            Deque<Node> frontier = new ArrayDeque<>(List.of(root));
+            for (int ply = 0; ply <= 2 && !frontier.isEmpty(); ply++) {
+                for (int i = frontier.size(); i > 0; i--) {
+                    Node node = frontier.poll();
+                    if (node.key == board.key()) {
+                        // Detach the subtree so the rest of the tree can be collected
+                        node.parent = null;
+                        return node;
+                    }
+                    frontier.addAll(node.children);
+                }
+            }
+        }
+        return new Node(null, -1, board);
+    }
+
+    /**
+     * @return The root action code with the most visits summed over every tree,
+     *         the lowest such code if several have, or the first legal action if
+     *         there were no playouts.
+     */
+    private int mostVisited (T3Board board) {
+        Map<Integer, Long> visits = new TreeMap<>();
+        for (Node root : roots) {
+            for (Node child : root.children) {
+                visits.merge(child.action, (long) child.visits, Long::sum);
+            }
+        }
+        int best = board.nextAction(0);
+        long bestVisits = 0;
+        for (Map.Entry<Integer, Long> entry : visits.entrySet()) {
+            if (entry.getValue() > bestVisits) {
+                best = entry.getKey();
+                bestVisits = entry.getValue();
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return The number of playouts a finished tree-growing task ran.
+     */
+    private static long playoutsOf (Future<Integer> grown) {
+        try {
+            return grown.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Monte Carlo search failed", e);
+        }
+    }
+
+    /**
+     * A position in the search tree, with the results of the playouts through it.
+     */
+    private static class Node {
+
+        Node parent;
+        final int action;
+        final long key;
+        final boolean oddsMoved;
+        final List<Node> children = new ArrayList<>();
+        // The next action code to expand, -1 once all are, or if terminal
+        int untried;
+        int visits;
+        // Playout results for the player who moved into this node
+        double wins;
+
+        /**
+         * Creates a node for the given board, reached by the given action code.
+         */
+        Node (Node parent, int action, T3Board board) {
+            this.parent = parent;
+            this.action = action;
+            this.key = board.key();
+            this.oddsMoved = !board.isOddsTurn();
+            this.untried = (board.isWin() || board.isFull()) ? -1 : board.nextAction(0);
+        }
+
+    }
+
+}
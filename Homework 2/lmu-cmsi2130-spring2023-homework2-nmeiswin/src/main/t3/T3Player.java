@@ -1,12 +1,238 @@
 package main.t3;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Artificial Intelligence responsible for playing the game of T3!
- * Implements the alpha-beta-pruning mini-max search algorithm
+ * Implements the alpha-beta-pruning mini-max search algorithm, in its negamax
+ * form: every score is for the player to move, and a child's score is the
+ * negation of its own.
+ * 
+ * [!] Plays any T3Rules variant. The standard game is searched to the end, but
+ * larger boards have far too many positions for that, so a player can be given
+ * a depth limit, beyond which unresolved positions are scored by a T3Evaluator
+ * (as ties by default), and a time limit per move. A timed player deepens its
+ * search one move at a time, searching the previous iteration's best action
+ * first, and answers with the best action of the deepest iteration finished
+ * before the deadline.
+ * 
+ * A player can also search on several threads, Young Brothers Wait style: at
+ * each node deep enough to be worth splitting, the first child is searched
+ * alone to narrow the window, then its younger brothers are searched in
+ * parallel on a ForkJoinPool, all sharing one transposition table. Searched to
+ * the end, a parallel player makes exactly the choice a sequential one does.
+ * The threads also share the killer and history tables and the node count,
+ * which they update without synchronization on purpose: an update lost to a
+ * race only changes the order some children are searched in, never a score, so
+ * it can cost time but not change the choice, and locking them would cost more.
+ * The first thread past a timed player's deadline stops all the others at
+ * their next node. A parallel player owns its pool, and close() shuts it down.
+ * 
+ * Below the root, children are searched best-first as far as can be guessed:
+ * the transposition table's best action, then those blocking a line the
+ * opponent could win on, then the two killer actions (the last to cause a
+ * cutoff among boards as full), then the rest by their history (how deep the
+ * cutoffs they have caused were). A player able to win at once needs no search
+ * at all.
+ * 
+ * Searches are principal variation searches: once a node's first child has set
+ * its score, each other child is only tested, with a null window, for whether
+ * it does better, and searched properly only if it does. At the root, the test
+ * window is just wide enough to tell a tie from a loss, so ties are still
+ * broken in col, row, move order and none of this changes the choice. A timed
+ * player also searches each iteration's first root child in an aspiration
+ * window around the previous iteration's score, widening it on failure.
  */
-public class T3Player {
+public class T3Player implements T3Agent {
+    
+    // Private Fields
+    // -----------------------------------------------------------------------------
+    private final T3TranspositionTable table;
+    private final T3EndgameTable endgame;
+    private final int maxDepth;
+    private final T3Evaluator evaluator;
+    private final long moveNanos;
+    private final ForkJoinPool pool;
+    // Nodes are counted without synchronization, so exactly only when sequential
+    private long deadline, nodes;
+    // Set by the first thread past the deadline, stopping every other one at its
+    // next node
+    private volatile boolean stopped;
+    private int completedDepth, rootScore;
+    // Move ordering, sized for the last rules played: two killer action codes per
+    // number of cells filled, and a history score per action code; shared by a
+    // parallel search's threads without synchronization (see above)
+    private T3Rules rules;
+    private int[][] killers;
+    private int[] history;
+    
+    // Private Constants
+    // -----------------------------------------------------------------------------
+    private static final int DEFAULT_TABLE_ENTRIES = 1 << 16;
+    private static final int WIN = T3Evaluator.MAX_SCORE, INFINITY = WIN + 1;
+    // Half the width of aspiration windows
+    private static final int ASPIRATION = 2;
+    // Nodes searched by one thread between checks of the clock
+    private static final int CLOCK_INTERVAL = 1 << 10;
+    // The fewest moves ahead a parallel search still splits at
+    private static final int SPLIT_DEPTH = 4;
+    // Ordering priorities above any history score, for blocks and killers
+    private static final int BLOCK = 1 << 30, KILLER = 1 << 29;
+    
+    // Constructors
+    // -----------------------------------------------------------------------------
+    
+    /**
+     * Creates a T3Player with a transposition table of the default size.
+     */
+    public T3Player () {
+        this(DEFAULT_TABLE_ENTRIES);
+    }
+    
+    /**
+     * Creates a T3Player whose transposition table holds the given number of
+     * entries (rounded up to a power of two), or none at all if 0. The table is
+     * kept from one choose() to the next.
+     * 
+     * @param tableEntries
+     *            The size of the transposition table, 0 to search without one.
+     */
+    public T3Player (int tableEntries) {
+        this(tableEntries, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Creates a T3Player whose transposition table holds the given number of
+     * entries, or none at all if 0, and that looks at most the given number of
+     * moves ahead, so that each choose() on a large variant takes bounded time.
+     * 
+     * @param tableEntries
+     *            The size of the transposition table, 0 to search without one.
+     * @param maxDepth
+     *            The most moves ahead to search, at least 1.
+     * @throws IllegalArgumentException
+     *             if maxDepth is less than 1
+     */
+    public T3Player (int tableEntries, int maxDepth) {
+        this(tableEntries, maxDepth, T3Evaluator.NONE, 0);
+    }
+    
+    /**
+     * Creates a T3Player that scores the positions at its depth limit with the
+     * given evaluator and, if given a time limit, searches iteratively deeper
+     * until the limit is reached.
+     * 
+     * @param tableEntries
+     *            The size of the transposition table, 0 to search without one.
+     * @param maxDepth
+     *            The most moves ahead to search, at least 1.
+     * @param evaluator
+     *            The scorer of positions at the depth limit.
+     * @param moveMillis
+     *            The time limit of each choose() in milliseconds, 0 for none.
+     * @throws IllegalArgumentException
+     *             if maxDepth is less than 1 or moveMillis is negative
+     */
+    public T3Player (int tableEntries, int maxDepth, T3Evaluator evaluator, long moveMillis) {
+        this(tableEntries, maxDepth, evaluator, moveMillis, 1);
+    }
+    
+    /**
+     * Creates a T3Player as above that searches on the given number of threads,
+     * sharing its transposition table between them.
+     * 
+     * @param tableEntries
+     *            The size of the transposition table, 0 to search without one.
+     * @param maxDepth
+     *            The most moves ahead to search, at least 1.
+     * @param evaluator
+     *            The scorer of positions at the depth limit, which must be safe
+     *            to call from several threads if there are.
+     * @param moveMillis
+     *            The time limit of each choose() in milliseconds, 0 for none.
+     * @param threads
+     *            The number of threads to search on, 1 to search sequentially.
+     * @throws IllegalArgumentException
+     *             if maxDepth or threads is less than 1 or moveMillis is negative
+     */
+    public T3Player (int tableEntries, int maxDepth, T3Evaluator evaluator, long moveMillis, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("T3Players must search on at least 1 thread");
+        }
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("T3Players must search at least 1 move ahead");
+        }
+        if (moveMillis < 0) {
+            throw new IllegalArgumentException("T3Players cannot have a negative time limit");
+        }
+        this.table = (tableEntries == 0) ? null : new T3TranspositionTable(tableEntries);
+        this.endgame = null;
+        this.maxDepth = maxDepth;
+        this.evaluator = Objects.requireNonNull(evaluator);
+        this.moveNanos = moveMillis * 1_000_000;
+        this.pool = (threads == 1) ? null : new ForkJoinPool(threads);
+    }
+    
+    /**
+     * Creates a T3Player that answers each choose() with a single lookup in the
+     * given endgame table, searching (with a default-size transposition table)
+     * only from states the table does not hold.
+     * 
+     * @param endgame
+     *            The solved game, e.g., from T3EndgameTable.open.
+     */
+    public T3Player (T3EndgameTable endgame) {
+        this.table = new T3TranspositionTable(DEFAULT_TABLE_ENTRIES);
+        this.endgame = endgame;
+        this.maxDepth = Integer.MAX_VALUE;
+        this.evaluator = T3Evaluator.NONE;
+        this.moveNanos = 0;
+        this.pool = null;
+    }
+    
+    // Methods
+    // -----------------------------------------------------------------------------
+    
+    /**
+     * Returns this player's transposition table, e.g., to read its hit counters.
+     * 
+     * @return The transposition table, or null if the player searches without one.
+     */
+    public T3TranspositionTable getTable () {
+        return this.table;
+    }
+    
+    /**
+     * Returns the number of positions searched by the last choose(), counted
+     * exactly by a sequential player and approximately by a parallel one.
+     * 
+     * @return The number of nodes searched.
+     */
+    @Override
+    public long getNodes () {
+        return this.nodes;
+    }
+    
+    /**
+     * Shuts down the threads of a parallel player; a sequential player has none.
+     */
+    @Override
+    public void close () {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+    
+    /**
+     * Returns how many moves ahead the last choose() finished searching, which for
+     * a timed player is the depth of the deepest iteration within its time limit.
+     * 
+     * @return The depth searched, or 0 if the last choice was looked up.
+     */
+    public int getCompletedDepth () {
+        return this.completedDepth;
+    }
     
     /**
      * Workhorse of an AI T3Player's choice mechanics that, given a game state,
@@ -21,102 +247,503 @@ public class T3Player {
      *            The state from which the T3Player is making a move decision.
      * @return The T3Player's optimal action.
      */
+    @Override
     public T3Action choose (T3State state) {
         
-        //keep track of wether node is max or min
-        boolean max = true;
-        //Initialize alpha beta values
-        int alpha = Integer.MIN_VALUE;
-        int beta = Integer.MAX_VALUE;
-        //generate possible acrions
-        Map<T3Action,T3State> possibleActions = state.getTransitions();
-        //set up mechanisms to track best action
-        int numActions = possibleActions.size();
-        int[] actionScores = new int[numActions];
-        int actionIndex = 0;
-        ArrayList<T3Action> actions = new ArrayList<>();
-        //explore every child
-        for (Map.Entry<T3Action,T3State> action: possibleActions.entrySet() ) {
-            //take any imedietly winning move
-            if(action.getValue().isWin())
+        //a solved state needs no search at all
+        completedDepth = 0;
+        nodes = 0;
+        if (endgame != null)
+        {
+            T3Action solved = endgame.bestAction(state);
+            if (solved != null)
             {
-                return action.getKey();
+                return solved;
             }
-            //add actions and scores to arrays to decode best move
-            actionScores[actionIndex] = explore(alpha, beta, action.getValue(),!max);
-            
-            actions.add(action.getKey());
-            actionIndex++;
         }
-        
-        //search for best action
-        int bestMoveIndex = 0;
-        for (int i = 0; i < numActions - 1;i++)
-        {
-            if(actionScores[i+1] > actionScores[bestMoveIndex])
+        //search on a copy of the board, applying and undoing moves in place
+        T3Board board = state.getBoard();
+        prepareOrdering(board.getRules());
+        //there is never anything to see past the last open cell
+        int depthLimit = Math.min(maxDepth, board.getRules().cells() - board.filled());
+        //without a time limit, search straight to the depth limit
+        deadline = (moveNanos == 0) ? 0 : System.nanoTime() + moveNanos;
+        stopped = false;
+        int bestAction = -1;
+        T3Action best = null;
+        for (int depth = (deadline == 0) ? depthLimit : 1; depth <= depthLimit; depth++) {
+            try {
+                final int d = depth, pv = bestAction;
+                bestAction = (pool == null) ? searchRoot(board, d, pv, new Countdown())
+                        : pool.invoke(ForkJoinTask.adapt(() -> searchRoot(board, d, pv, new Countdown())));
+            } catch (SearchTimeout e) {
+                //the board was abandoned mid-search, but the last answer stands
+                break;
+            } finally {
+                //abandoned parallel tasks stop at their next node once stopped
+                //is set, so this only waits for them to unwind, not to finish
+                if (pool != null)
+                {
+                    pool.awaitQuiescence(1, TimeUnit.MINUTES);
+                }
+            }
+            best = (bestAction < 0) ? null : board.action(bestAction);
+            completedDepth = depth;
+            //an immediate win is taken however deep the search
+            if (best == null || state.getNextState(best).isWin())
             {
-                bestMoveIndex = i+1;
+                break;
             }
-        } 
-        return actions.get(bestMoveIndex);
+        }
+        return best;
     }
     
-    private int explore(int alpha, int beta, T3State state, boolean max)
+    /**
+     * Searches each child of the root to the given depth, the previous
+     * iteration's best action first, making the choice described in choose.
+     * 
+     * @param board
+     *            The root board.
+     * @param depth
+     *            The number of moves ahead to search, at least 1.
+     * @param pv
+     *            The best action code of the previous iteration, -1 if none.
+     * @param clock
+     *            The countdown to this thread's next check of the clock.
+     * @return The chosen action code, or -1 if there are no legal actions.
+     */
+    private int searchRoot(T3Board board, int depth, int pv, Countdown clock)
     {
-        
-        
-        //Check if node is terminal state and return utility
-        if(state.isWin())
-        {
-            if(max)
+        int[] children = children(board, pv);
+        //take any imedietly winning move
+        for (int action : children) {
+            board.apply(action);
+            boolean won = board.isWin();
+            board.undo(action);
+            if (won)
             {
-                return -1;
+                return action;
             }
-            else{
-                return 1;
+        }
+        //set up mechanisms to track best action
+        int bestAction = -1;
+        int bestScore = -INFINITY;
+        Deque<ForkJoinTask<Integer>> siblings = null;
+        int forkedLow = 0, forkedHigh = 0;
+        try {
+            for (int i = 0; i < children.length; i++) {
+                int action = children[i];
+                //the first child is searched in full, or around the last score if
+                //there was an earlier iteration; the rest are only tested for
+                //whether they beat, or in tiebreaking order tie, the best so far
+                int low, high, score;
+                if (i == 0)
+                {
+                    low = (pv < 0) ? -INFINITY : rootScore - ASPIRATION;
+                    high = (pv < 0) ? INFINITY : rootScore + ASPIRATION;
+                }
+                else{
+                    low = bestScore - ((action < bestAction) ? 1 : 0);
+                    high = bestScore + 1;
+                }
+                //in parallel, the rest are tested at once after the first, with a
+                //window wide enough for all of them
+                if (siblings == null && pool != null && i > 0)
+                {
+                    forkedLow = bestScore - 1;
+                    forkedHigh = bestScore + 1;
+                    siblings = forkSiblings(-forkedHigh, -forkedLow, board, depth - 1, children, i);
+                }
+                if (siblings != null)
+                {
+                    low = forkedLow;
+                    high = forkedHigh;
+                    score = -siblings.poll().join();
+                }
+                else{
+                    score = -searchChild(-high, -low, board, depth - 1, action, clock);
+                }
+                //outside its window a score is only a bound: fine if it shows the
+                //child loses to the best, otherwise the child is searched exactly
+                boolean exact = score > low && score < high;
+                boolean worse = i > 0 && score <= low && (score < bestScore || (score == bestScore && action > bestAction));
+                if (!exact && !worse)
+                {
+                    score = -searchChild(-INFINITY, INFINITY, board, depth - 1, action, clock);
+                    exact = true;
+                }
+                //only a strictly better score replaces an action earlier in
+                //tiebreaking order, which the pv may not be
+                if (exact && (bestAction < 0 || score > bestScore || (score == bestScore && action < bestAction)))
+                {
+                    bestScore = score;
+                    bestAction = action;
+                }
             }
+        } finally {
+            cancelAll(siblings);
         }
-        if(state.isTie())
+        rootScore = bestScore;
+        return bestAction;
+    }
+    
+    /**
+     * Negamax search of the given board with principal variation search.
+     * 
+     * @param alpha
+     *            The score the player to move is already assured of elsewhere.
+     * @param beta
+     *            The score their opponent is already assured of elsewhere.
+     * @param board
+     *            The board searched, restored before returning.
+     * @param depth
+     *            The number of moves ahead to search.
+     * @param clock
+     *            The countdown to this thread's next check of the clock.
+     * @return The board's score for the player to move if strictly between alpha
+     *         and beta, otherwise a bound on it on the same side of the window.
+     */
+    private int explore(int alpha, int beta, T3Board board, int depth, Countdown clock)
+    {
+        nodes++;
+        //every node counts towards the next check of the clock, leaves included,
+        //so it comes before any of them return; a thread past the deadline
+        //stops the others too
+        if (stopped)
+        {
+            throw new SearchTimeout();
+        }
+        if (deadline != 0 && --clock.nodesLeft == 0)
+        {
+            clock.nodesLeft = CLOCK_INTERVAL;
+            if (System.nanoTime() > deadline)
+            {
+                stopped = true;
+                throw new SearchTimeout();
+            }
+        }
+        //Check if node is terminal state and return utility: a win was made
+        //by the player who just moved
+        if(board.isWin())
+        {
+            return -WIN;
+        }
+        if(board.isFull())
         {
             return 0;
         }
+        //positions past the depth limit are scored by the evaluator
+        if(depth == 0)
+        {
+            return Math.max(-WIN + 1, Math.min(WIN - 1, evaluator.evaluate(board)));
+        }
+        //a player who can win at once will
+        if(board.winningAction() >= 0)
+        {
+            return WIN;
+        }
 
-        //generate possible moves
-        Map<T3Action,T3State> possibleActions = state.getTransitions();
-        if (max)
+        //consult the transposition table, shared by every rotation and
+        //reflection of the board; an entry is only usable if it searched at
+        //least as deep, or all the way to the end
+        depth = Math.min(depth, board.getRules().cells() - board.filled());
+        int symmetry = (table == null) ? 0 : board.canonicalSymmetry();
+        long key = board.key(symmetry);
+        long entry = (table == null) ? T3TranspositionTable.MISS : table.probe(key);
+        //whatever its depth, the entry's best action is worth searching first
+        int hashMove = T3TranspositionTable.move(entry);
+        hashMove = (entry == T3TranspositionTable.MISS || hashMove < 0) ? -1 : board.restore(hashMove, symmetry);
+        if (entry != T3TranspositionTable.MISS && T3TranspositionTable.depth(entry) >= depth)
         {
-            int u = Integer.MIN_VALUE;
-            for (Map.Entry<T3Action,T3State> action: possibleActions.entrySet() ) {
-                //update utility with best move
-                u = Math.max(u,explore(alpha, beta, action.getValue(),!max));
-                //update alpha if we find a higher utility
-                alpha = Math.max(alpha,u);
-                //pruning
-                if(beta <= alpha)
+            int stored = T3TranspositionTable.value(entry);
+            byte flag = T3TranspositionTable.flag(entry);
+            if (flag == T3TranspositionTable.EXACT)
+            {
+                return stored;
+            }
+            if (flag == T3TranspositionTable.LOWER)
+            {
+                alpha = Math.max(alpha, stored);
+            }
+            else{
+                beta = Math.min(beta, stored);
+            }
+            if (alpha >= beta)
+            {
+                return stored;
+            }
+        }
+        int alphaIn = alpha;
+
+        int u = -INFINITY;
+        int bestAction = -1;
+        int[] children = order(board, children(board, hashMove), hashMove >= 0);
+        //young brothers wait for the eldest to narrow the window, then are
+        //searched in parallel, where there is enough below them to be worth it
+        boolean split = pool != null && depth >= SPLIT_DEPTH;
+        Deque<ForkJoinTask<Integer>> siblings = null;
+        int forkedAlpha = alpha;
+        try {
+            for (int i = 0; i < children.length; i++) {
+                int action = children[i];
+                int score;
+                if (i == 0)
                 {
-                    break;
+                    score = -searchChild(-beta, -alpha, board, depth - 1, action, clock);
                 }
-            }
-            return u;
-        }
-        else{
-            int u = Integer.MAX_VALUE;
-            for (Map.Entry<T3Action,T3State> action: possibleActions.entrySet() ) {
-                //update utility with worst move
-                u = Math.min(u,explore(alpha, beta, action.getValue(),!max));
-                //update beta if we find a lower utility
-                beta = Math.min(beta,u);
-                //pruning
-                if(beta <= alpha)
+                else{
+                    //test the child with a null window, and only if it beats the
+                    //window it was tested with, search it again to find by how much
+                    if (siblings == null && split)
+                    {
+                        forkedAlpha = alpha;
+                        siblings = forkSiblings(-alpha - 1, -alpha, board, depth - 1, children, i);
+                    }
+                    int tested = (siblings != null) ? forkedAlpha : alpha;
+                    score = (siblings != null) ? -siblings.poll().join() : -searchChild(-alpha - 1, -alpha, board, depth - 1, action, clock);
+                    if (score > tested && score < beta)
+                    {
+                        score = -searchChild(-beta, -alpha, board, depth - 1, action, clock);
+                    }
+                }
+                //update utility and alpha with best move, remembering which move
+                //set the utility for ordering later searches
+                if (score > u)
+                {
+                    u = score;
+                    bestAction = action;
+                }
+                alpha = Math.max(alpha, u);
+                //pruning, remembering the action that caused it for ordering
+                if(alpha >= beta)
                 {
+                    recordCutoff(board, action, depth);
                     break;
                 }
             }
-            return u;
+        } finally {
+            cancelAll(siblings);
+        }
+        if (table != null)
+        {
+            byte flag = (u <= alphaIn) ? T3TranspositionTable.UPPER
+                    : (u >= beta) ? T3TranspositionTable.LOWER : T3TranspositionTable.EXACT;
+            table.store(key, u, flag, depth, (bestAction < 0) ? -1 : board.transform(bestAction, symmetry));
+        }
+        return u;
+    }
+    
+    /**
+     * Searches the child reached by the given action code, on this thread.
+     * 
+     * @return The child's score, as explore gives it.
+     */
+    private int searchChild(int alpha, int beta, T3Board board, int depth, int action, Countdown clock)
+    {
+        board.apply(action);
+        int score = explore(alpha, beta, board, depth, clock);
+        board.undo(action);
+        return score;
+    }
+    
+    /**
+     * Forks a search of each of the given children from the given index on, each
+     * on its own copy of the board and with its own countdown to checking the
+     * clock, which it checks first.
+     * 
+     * @return The forked searches, in order, each giving its child's score as
+     *         explore does.
+     */
+    private Deque<ForkJoinTask<Integer>> forkSiblings(int alpha, int beta, T3Board board, int depth,
+            int[] children, int from)
+    {
+        Deque<ForkJoinTask<Integer>> siblings = new ArrayDeque<>();
+        for (int i = from; i < children.length; i++) {
+            if (stopped)
+            {
+                cancelAll(siblings);
+                throw new SearchTimeout();
+            }
+            T3Board child = new T3Board(board);
+            child.apply(children[i]);
+            siblings.add(ForkJoinTask.adapt(() -> explore(alpha, beta, child, depth, new Countdown(1))).fork());
+        }
+        return siblings;
+    }
+    
+    /**
+     * Cancels the forked searches that have not been joined, e.g., after a cutoff
+     * or a timeout; those already started stop at their next node if stopped.
+     */
+    private static void cancelAll(Deque<ForkJoinTask<Integer>> siblings)
+    {
+        if (siblings != null)
+        {
+            siblings.forEach(task -> task.cancel(false));
+        }
+    }
+    
+    /**
+     * Lists the legal action codes of the board, the given one first if there is
+     * one and then the rest in tiebreaking order, leaving out those that mirror
+     * an earlier action.
+     * 
+     * @param board
+     *            The board moved on.
+     * @param first
+     *            The action code to search first, or -1 for none.
+     * @return The action codes to search.
+     */
+    private static int[] children(T3Board board, int first)
+    {
+        int stabilizer = board.stabilizer();
+        int[] children = new int[board.getRules().cells() * board.getRules().numbers()];
+        int count = 0;
+        if (first >= 0)
+        {
+            children[count++] = first;
+        }
+        for (int action = board.nextAction(0); action >= 0; action = board.nextAction(action + 1)) {
+            if (action != first && !mirrorsEarlier(board, stabilizer, action))
+            {
+                children[count++] = action;
+            }
         }
+        return Arrays.copyOf(children, count);
+    }
+    
+    /**
+     * Sorts the given children best-first by guess: blocks of the opponent's
+     * winning cells, then killers, then the rest by history score, ties in
+     * tiebreaking order.
+     * 
+     * @param board
+     *            The board moved on.
+     * @param children
+     *            The action codes to order, in place.
+     * @param keepFirst
+     *            Whether the first child is the hash move, which stays first.
+     * @return The children.
+     */
+    private int[] order(T3Board board, int[] children, boolean keepFirst)
+    {
+        int from = keepFirst ? 1 : 0;
+        long blocks = board.threatCells(!board.isOddsTurn());
+        int[] killer = killers[board.filled()];
+        long[] keys = new long[children.length - from];
+        for (int i = from; i < children.length; i++) {
+            int action = children[i];
+            int priority = ((blocks & 1L << board.cellOf(action)) != 0) ? BLOCK
+                    : (action == killer[0]) ? KILLER + 1 : (action == killer[1]) ? KILLER : history[action];
+            //highest priority first once sorted in descending order, then lowest action
+            keys[i - from] = (long) priority << 32 | (Integer.MAX_VALUE - action);
+        }
+        Arrays.sort(keys);
+        for (int i = from; i < children.length; i++) {
+            children[i] = Integer.MAX_VALUE - (int) keys[children.length - 1 - i];
+        }
+        return children;
+    }
+    
+    /**
+     * Makes the given action, having caused a cutoff, the first killer for boards
+     * as full as the given one, and adds to its history score.
+     */
+    private void recordCutoff(T3Board board, int action, int depth)
+    {
+        int[] killer = killers[board.filled()];
+        if (killer[0] != action)
+        {
+            killer[1] = killer[0];
+            killer[0] = action;
+        }
+        history[action] = Math.min(KILLER - 1, history[action] + depth * depth);
+    }
+    
+    /**
+     * Sizes the move ordering tables for the given rules, clearing them if the
+     * rules changed, and otherwise halving the history so recent cutoffs count
+     * most.
+     */
+    private void prepareOrdering(T3Rules rules)
+    {
+        if (!rules.equals(this.rules))
+        {
+            this.rules = rules;
+            this.killers = new int[rules.cells() + 1][2];
+            this.history = new int[rules.cells() * rules.numbers()];
+            for (int[] killer : killers) {
+                Arrays.fill(killer, -1);
+            }
+            return;
+        }
+        for (int i = 0; i < history.length; i++) {
+            history[i] /= 2;
+        }
+    }
+    
+    /**
+     * Determines if a symmetry of the board maps the given action onto one that
+     * comes earlier in tiebreaking order. Such an action leads to a mirror image
+     * of an earlier child, with the same score, so it can never be chosen over
+     * that child and need not be searched.
+     * 
+     * @param board
+     *            The board moved on.
+     * @param stabilizer
+     *            The symmetries leaving the board unchanged, see T3Board.stabilizer.
+     * @param action
+     *            The action code considered, see T3Board.nextAction.
+     * @return true if the action mirrors an earlier one, false otherwise
+     */
+    private static boolean mirrorsEarlier(T3Board board, int stabilizer, int action)
+    {
+        if (stabilizer == 1)
+        {
+            return false;
+        }
+        T3Rules rules = board.getRules();
+        int cell = board.cellOf(action), slot = board.slotOf(cell);
+        for (int s = 1; s < T3Rules.SYMMETRIES; s++) {
+            //action codes order cells by column first, then row
+            if ((stabilizer & 1 << s) != 0 && board.slotOf(rules.transformCell(cell, s)) < slot) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Counts down the nodes a thread searches until it next checks the clock. A
+     * search running on several threads gives each task its own, so that no
+     * count is shared between threads and every thread checks as often.
+     */
+    private static class Countdown {
+        
+        int nodesLeft;
         
+        Countdown () {
+            this(CLOCK_INTERVAL);
+        }
+        
+        Countdown (int nodesLeft) {
+            this.nodesLeft = nodesLeft;
+        }
+        
+    }
     
+    /**
+     * Thrown to unwind a search that has run past its deadline.
+     */
+    private static class SearchTimeout extends RuntimeException {
+        
+        private static final long serialVersionUID = 1L;
+        
+        SearchTimeout () {
+            // Thrown often and never reported, so a stack trace is wasted work
+            super(null, null, false, false);
+        }
+        
     }
     
 }
-
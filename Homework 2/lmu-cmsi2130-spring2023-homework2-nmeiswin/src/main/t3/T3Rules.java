@@ -0,0 +1,241 @@
+package main.t3;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * The parameters of a T3 variant: the board is size x size, the odds player
+ * places the odd numbers from 1 to maxMove and the evens player the even ones,
+ * and whoever fills a row, column, or diagonal so that it sums to winTarget
+ * wins. STANDARD is the classic 3 x 3 game with numbers up to 6 and a target of
+ * 13.
+ *
+ * [!] Rules also hold the tables shared by every board of the variant: its
+ * lines, its eight symmetries as cell permutations, and the per-cell key of
+ * each number. Boards small enough to pack into a long (as the standard game
+ * is) are keyed by that packing, which is unique; larger boards are keyed by a
+ * 64-bit Zobrist hash.
+ */
+public class T3Rules {
+
+    // Constants
+    // -----------------------------------------------------------------------------
+    public static final T3Rules STANDARD = new T3Rules(3, 6, 13);
+    static final int SYMMETRIES = 8;
+
+    // Private Fields
+    // -----------------------------------------------------------------------------
+    private final int size, maxMove, winTarget, cells, numbers;
+    private final int[][] lines, linesThrough;
+    private final int[][] symmetryCells, inverseCells;
+    private final boolean packed;
+    // Key of each number in each cell, at [cell * (maxMove + 1) + move], and of
+    // the odds player being next to act
+    private final long[] cellKeys;
+    private final long turnKey;
+    // Key of each number in each cell as moved by each symmetry, at
+    // [(cell * (maxMove + 1) + move) * SYMMETRIES + symmetry]
+    private final long[] variantKeys;
+
+    // Constructors
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Creates the rules of a T3 variant.
+     *
+     * @param size
+     *            The number of rows and of columns on the board.
+     * @param maxMove
+     *            The largest number that can be placed.
+     * @param winTarget
+     *            The sum a full line must reach to win.
+     * @throws IllegalArgumentException
+     *             if the board is smaller than 2 x 2 or larger than 8 x 8, or a
+     *             player would have no numbers to place
+     */
+    public T3Rules (int size, int maxMove, int winTarget) {
+        if (size < 2 || size > 8) {
+            throw new IllegalArgumentException("T3 boards must be from 2 x 2 to 8 x 8");
+        }
+        if (maxMove < 2 || maxMove > 64) {
+            throw new IllegalArgumentException("T3 numbers must range from 1 to between 2 and 64");
+        }
+        this.size = size;
+        this.maxMove = maxMove;
+        this.winTarget = winTarget;
+        this.cells = size * size;
+        this.numbers = (maxMove + 1) / 2;
+        this.lines = buildLines(size);
+        this.linesThrough = new int[cells][];
+        for (int cell = 0; cell < cells; cell++) {
+            final int c = cell;
+            linesThrough[cell] = IntStream.range(0, lines.length)
+                    .filter(l -> Arrays.stream(lines[l]).anyMatch(i -> i == c)).toArray();
+        }
+        this.symmetryCells = new int[SYMMETRIES][cells];
+        this.inverseCells = new int[SYMMETRIES][cells];
+        int n = size - 1;
+        for (int c = 0; c < size; c++) {
+            for (int r = 0; r < size; r++) {
+                // Identity, the three clockwise quarter turns, then the mirrors in
+                // the vertical axis, horizontal axis, main diagonal, and anti-diagonal
+                int[][] to = {
+                    {c, r}, {n - r, c}, {n - c, n - r}, {r, n - c},
+                    {n - c, r}, {c, n - r}, {r, c}, {n - r, n - c}
+                };
+                for (int s = 0; s < SYMMETRIES; s++) {
+                    symmetryCells[s][r * size + c] = to[s][1] * size + to[s][0];
+                    inverseCells[s][to[s][1] * size + to[s][0]] = r * size + c;
+                }
+            }
+        }
+        int cellBits = 32 - Integer.numberOfLeadingZeros(maxMove);
+        this.packed = cellBits * cells < Long.SIZE - 1;
+        this.cellKeys = new long[cells * (maxMove + 1)];
+        Random zobrist = new Random(Objects.hash(size, maxMove, winTarget));
+        for (int cell = 0; cell < cells; cell++) {
+            for (int move = 1; move <= maxMove; move++) {
+                cellKeys[cell * (maxMove + 1) + move] = packed ? (long) move << (cellBits * cell) : zobrist.nextLong();
+            }
+        }
+        this.turnKey = packed ? 1L << (cellBits * cells) : zobrist.nextLong();
+        this.variantKeys = new long[cellKeys.length * SYMMETRIES];
+        for (int cell = 0; cell < cells; cell++) {
+            for (int move = 1; move <= maxMove; move++) {
+                for (int s = 0; s < SYMMETRIES; s++) {
+                    variantKeys[(cell * (maxMove + 1) + move) * SYMMETRIES + s] = cellKey(transformCell(cell, s), move);
+                }
+            }
+        }
+    }
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * @return The number of rows and of columns on the board.
+     */
+    public int size () {
+        return this.size;
+    }
+
+    /**
+     * @return The largest number that can be placed.
+     */
+    public int maxMove () {
+        return this.maxMove;
+    }
+
+    /**
+     * @return The sum a full line must reach to win.
+     */
+    public int winTarget () {
+        return this.winTarget;
+    }
+
+    /**
+     * @return The number of cells on the board.
+     */
+    public int cells () {
+        return this.cells;
+    }
+
+    /**
+     * @return Whether boards are keyed by their exact packing rather than a hash.
+     */
+    public boolean isPacked () {
+        return this.packed;
+    }
+
+    /**
+     * @return The most numbers either player can choose from.
+     */
+    int numbers () {
+        return this.numbers;
+    }
+
+    /**
+     * @return The cells (row * size + col) of every row, column, and diagonal.
+     */
+    int[][] lines () {
+        return this.lines;
+    }
+
+    /**
+     * @return The indexes into lines() of the lines through the given cell.
+     */
+    int[] linesThrough (int cell) {
+        return this.linesThrough[cell];
+    }
+
+    /**
+     * @return The cell that the given cell moves to under the given symmetry.
+     */
+    int transformCell (int cell, int symmetry) {
+        return this.symmetryCells[symmetry][cell];
+    }
+
+    /**
+     * @return The cell that moves to the given cell under the given symmetry.
+     */
+    int restoreCell (int cell, int symmetry) {
+        return this.inverseCells[symmetry][cell];
+    }
+
+    /**
+     * @return The key of the given number placed in the given cell.
+     */
+    long cellKey (int cell, int move) {
+        return this.cellKeys[cell * (maxMove + 1) + move];
+    }
+
+    /**
+     * @return The key of the given number placed in the cell that the given cell
+     *         moves to under the given symmetry.
+     */
+    long variantKey (int cell, int move, int symmetry) {
+        return this.variantKeys[(cell * (maxMove + 1) + move) * SYMMETRIES + symmetry];
+    }
+
+    /**
+     * @return The key of the odds player being next to act.
+     */
+    long turnKey () {
+        return this.turnKey;
+    }
+
+    @Override
+    public String toString () {
+        return size + "x" + size + ", numbers 1-" + maxMove + ", target " + winTarget;
+    }
+
+    @Override
+    public boolean equals (Object other) {
+        if (other == this) { return true; }
+        if (!(other instanceof T3Rules)) { return false; }
+        T3Rules otherCast = (T3Rules) other;
+        return this.size == otherCast.size && this.maxMove == otherCast.maxMove && this.winTarget == otherCast.winTarget;
+    }
+
+    @Override
+    public int hashCode () {
+        return Objects.hash(this.size, this.maxMove, this.winTarget);
+    }
+
+    /**
+     * @return The cells of every row, then every column, then both diagonals.
+     */
+    private static int[][] buildLines (int size) {
+        int[][] lines = new int[2 * size + 2][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                lines[i][j] = i * size + j;
+                lines[size + i][j] = j * size + i;
+            }
+            lines[2 * size][i] = i * size + i;
+            lines[2 * size + 1][i] = i * size + (size - 1 - i);
+        }
+        return lines;
+    }
+
+}
@@ -7,18 +7,17 @@ import java.util.stream.IntStream;
  * Representation of the T3 grid board-state, which player's turn (odds / evens),
  * and ability to obtain the actions and transitions possible (among other state
  * utility methods).
+ * 
+ * [!] Note: T3States are immutable wrappers around a T3Board that is never
+ * modified; the search engine works on copies of it, applying and undoing
+ * moves in place. States default to the standard rules (T3Rules.STANDARD),
+ * and can be created for any other variant.
  */
 public class T3State {
     
     // Private Fields
     // -----------------------------------------------------------------------------
-    private int[][] state;
-    private boolean isOddsTurn;
-    
-    // Private Constants
-    // -----------------------------------------------------------------------------
-    private static final int MAX_MOVE = 6;
-    private static final int WIN_TARGET = 13;
+    private final T3Board board;
     
     // Constructors
     // -----------------------------------------------------------------------------
@@ -32,8 +31,7 @@ public class T3State {
      *            numbers.
      */
     public T3State (boolean isOddsTurn) {
-        this.state = new int[3][3];
-        this.isOddsTurn = isOddsTurn;
+        this(T3Rules.STANDARD, isOddsTurn);
     }
     
     /**
@@ -45,10 +43,55 @@ public class T3State {
      *            numbers.
      * @param state
      *            The pre-specified board state
+     * @throws IllegalArgumentException
+     *             if the board is not 3 x 3 or holds a number that cannot be placed
      */
     public T3State (boolean isOddsTurn, int[][] state) {
-        this.state = state;
-        this.isOddsTurn = isOddsTurn;
+        this(T3Rules.STANDARD, isOddsTurn, state);
+    }
+    
+    /**
+     * Creates a new empty board of the given variant with the specified player's
+     * turn as the next to act.
+     * 
+     * @param rules
+     *            The variant being played.
+     * @param isOddsTurn
+     *            Whether or not the current player is the one playing the odd
+     *            numbers.
+     */
+    public T3State (T3Rules rules, boolean isOddsTurn) {
+        this(new T3Board(rules, isOddsTurn));
+    }
+    
+    /**
+     * Creates a new pre-specified board of the given variant with the specified
+     * player's turn as the next to act.
+     * 
+     * @param rules
+     *            The variant being played.
+     * @param isOddsTurn
+     *            Whether or not the current player is the one playing the odd
+     *            numbers.
+     * @param state
+     *            The pre-specified board state
+     * @throws IllegalArgumentException
+     *             if the board does not fit the rules or holds a number that cannot
+     *             be placed
+     */
+    public T3State (T3Rules rules, boolean isOddsTurn, int[][] state) {
+        this(new T3Board(rules, isOddsTurn, state));
+    }
+    
+    /**
+     * Creates a T3State holding the given board, which must not be modified
+     * afterwards.
+     * 
+     * @param board
+     *            The board of the state.
+     */
+    T3State (T3Board board) {
+        this.board = board;
     }
     
     // Methods
@@ -65,11 +108,40 @@ public class T3State {
      * @return true if act is legal from this state, false otherwise
      */
     public boolean isValidAction (T3Action act) {
-        return act.col() >= 0 && act.col() < state.length && 
-               act.row() >= 0 && act.col() < state[0].length &&
-               act.move() >= 0 && act.move() <= MAX_MOVE &&
-               ((this.isOddsTurn) ? act.move() % 2 == 1 : act.move() % 2 == 0) &&
-               state[act.row()][act.col()] == 0;
+        T3Rules rules = getRules();
+        return act.col() >= 0 && act.col() < rules.size() && 
+               act.row() >= 0 && act.row() < rules.size() &&
+               act.move() >= 1 && act.move() <= rules.maxMove() &&
+               ((this.isOddsTurn()) ? act.move() % 2 == 1 : act.move() % 2 == 0) &&
+               board.get(act.col(), act.row()) == 0;
+    }
+    
+    /**
+     * Returns whether or not the odds player is the next to act.
+     * 
+     * @return true if it is the odds player's turn, false for evens
+     */
+    public boolean isOddsTurn () {
+        return board.isOddsTurn();
+    }
+    
+    /**
+     * Returns the rules of the variant this state is played under.
+     * 
+     * @return The state's rules.
+     */
+    public T3Rules getRules () {
+        return board.getRules();
+    }
+    
+    /**
+     * Returns a mutable T3Board holding this state, for searching from it; changes
+     * to the board do not affect this state.
+     * 
+     * @return A new T3Board for this state.
+     */
+    public T3Board getBoard () {
+        return new T3Board(this.board);
     }
     
     /**
@@ -88,30 +160,9 @@ public class T3State {
             throw new IllegalArgumentException("Chosen action " + act + " is invalid!");
         }
         
-        T3State nextState = this.clone();
-        nextState.state[act.row()][act.col()] = act.move();
-        nextState.isOddsTurn = ! this.isOddsTurn;
-        return nextState;
-    }
-    
-    /**
-     * Private helper that returns a list of (x, y) = (c, r) tuples indicating the
-     * open tiles in the current board state.
-     * 
-     * @return The list of open board locations
-     */
-    private ArrayList<int[]> getOpenTiles () {
-        ArrayList<int[]> results = new ArrayList<>();
-        // Probably a better way to do this with streams but meh...
-        for (int r = 0; r < this.state.length; r++) {
-            for (int c = 0; c < this.state[0].length; c++) {
-                if (this.state[r][c] == 0) {
-                    int[] loc = {c, r};
-                    results.add(loc); 
-                }
-            }
-        }
-        return results;
+        T3Board next = getBoard();
+        next.apply(act);
+        return new T3State(next);
     }
     
     /**
@@ -122,7 +173,37 @@ public class T3State {
      *         for odds.
      */
     public int[] getMoves () {
-        return IntStream.range(1, MAX_MOVE+1).filter(i -> (this.isOddsTurn) ? i % 2 == 1 : i % 2 == 0).toArray();
+        boolean odds = isOddsTurn();
+        return IntStream.range(1, getRules().maxMove()+1).filter(i -> (odds) ? i % 2 == 1 : i % 2 == 0).toArray();
+    }
+    
+    /**
+     * Returns the legal actions from this state, generated lazily in tiebreaking
+     * order (ascending col, row, then move), so that stopping early never creates
+     * the actions after the last one used.
+     * 
+     * @return The legal actions from this state, for iterating over.
+     */
+    public Iterable<T3Action> getActions () {
+        return () -> new Iterator<T3Action>() {
+            private final T3Board board = getBoard();
+            private int next = board.nextAction(0);
+            
+            @Override
+            public boolean hasNext () {
+                return next >= 0;
+            }
+            
+            @Override
+            public T3Action next () {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                T3Action act = board.action(next);
+                next = board.nextAction(next + 1);
+                return act;
+            }
+        };
     }
     
     /**
@@ -132,34 +213,22 @@ public class T3State {
      * Returns a TreeMap such that iterating over its key-value pairs is done in
      * sorted order according to the keys (T3Actions).
      * 
+     * [!] This builds every child eagerly; to search, prefer getActions or the
+     * action codes of T3Board.nextAction, which create children one at a time.
+     * 
      * @return The map of legal actions to the next states that they lead.
      */
     public Map<T3Action,T3State> getTransitions () {
-
-        ArrayList<int[]> openTiles = getOpenTiles();
-        int[] possibleActions = getMoves();
-        
-        Map<T3Action,T3State> transition = new TreeMap<T3Action,T3State>(new Comparator<T3Action>() {
-           
-            @Override
-            public int compare(T3Action a1, T3Action a2) {
-                return a1.compareTo(a2);
-            }
-            
-        });
-        for (int[] tile : openTiles) {
-            for (int move : possibleActions) {
-                T3Action act = new T3Action(tile[0], tile[1], move);
-                transition.put(act ,getNextState(act));
-            }
+        Map<T3Action,T3State> transition = new TreeMap<>();
+        for (T3Action act : getActions()) {
+            transition.put(act, getNextState(act));
         }
         return transition;
     }
 
-    
     /**
-     * Determines if any of the cols, rows, and diagonals in the given state sum to
-     * the WIN_TARGET amount (default: 13), and if so, concludes that this is a
+     * Determines if any of the full cols, rows, and diagonals in the given state
+     * sum to the rules' win target (default: 13), and if so, concludes that this is a
      * winning state for whomever made the move that generated it.
      * 
      * [!] NOTE: This returns whether or not the state is a win for ANY player. Users
@@ -168,16 +237,7 @@ public class T3State {
      * @return true if the state is a winning terminal, false otherwise
      */
     public boolean isWin () {
-        return Arrays.asList(
-            IntStream.range(0, 3).map(i -> state[i][0]).sum(), // col 0
-            IntStream.range(0, 3).map(i -> state[i][1]).sum(), // col 1
-            IntStream.range(0, 3).map(i -> state[i][2]).sum(), // col 2
-            IntStream.range(0, 3).map(i -> state[i][i]).sum(), // diag TL->BR
-            IntStream.range(0, 3).map(i -> state[0+i][2-i]).sum(), // diag TR->BL
-            IntStream.of(state[0]).sum(), // row0
-            IntStream.of(state[1]).sum(), // row1
-            IntStream.of(state[2]).sum()  // row2
-        ).contains(WIN_TARGET);
+        return board.isWin();
     }
     
     /**
@@ -187,21 +247,17 @@ public class T3State {
      * @return true if a tie game, false otherwise
      */
     public boolean isTie () {
-        return !(this.isWin()) && ! Arrays.stream(this.state).flatMapToInt(Arrays::stream).anyMatch(i -> i == 0);
+        return board.isTie();
     }
     
     /**
-     * Returns a deep copy of this T3State
+     * Returns a copy of this T3State
      * 
-     * @return A deep copy of this T3State
+     * @return A copy of this T3State
      */
     @Override
     public T3State clone () {
-        T3State copy = new T3State(this.isOddsTurn);
-        for (int i = 0; i < state.length; i++) {
-            copy.state[i] = state[i].clone();
-        }
-        return copy;
+        return new T3State(getBoard());
     }
     
     /**
@@ -211,9 +267,14 @@ public class T3State {
      */
     @Override
     public String toString () {
+        int size = getRules().size();
         String result = "";
-        for (int[] r : this.state) {
-            result += Arrays.toString(r) + "\n";
+        for (int r = 0; r < size; r++) {
+            int[] row = new int[size];
+            for (int c = 0; c < size; c++) {
+                row[c] = board.get(c, r);
+            }
+            result += Arrays.toString(row) + "\n";
         }
         return result;
     }
@@ -222,13 +283,12 @@ public class T3State {
     public boolean equals (Object other) {
         if (other == this) { return true; }
         if (!(other instanceof T3State)) { return false; }
-        T3State otherCast = (T3State) other;
-        return this.isOddsTurn == otherCast.isOddsTurn && Arrays.deepEquals(this.state, otherCast.state);
+        return this.board.samePosition(((T3State) other).board);
     }
     
     @Override
     public int hashCode () {
-        return Objects.hash(this.state, this.isOddsTurn);
+        return Long.hashCode(this.board.key());
     }
     
 }
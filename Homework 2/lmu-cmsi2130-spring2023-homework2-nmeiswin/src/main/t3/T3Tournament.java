@@ -0,0 +1,433 @@
+package main.t3;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.LongFunction;
+
+/**
+ * Round-robin tournament between T3 agents, for comparing versions of an agent
+ * over many games rather than the single game that debugging plays. Every pair of
+ * entrants plays the given number of games, spread over a pool of threads, and
+ * each entrant's record against each opponent is reported with a confidence
+ * interval on its win rate, percentiles of its time per move, and its search
+ * speed, and can be written out as CSV.
+ *
+ * [!] Agents keep state between moves, so each game gets fresh agents from the
+ * entrants' factories, passed the game's seed, and closes them when it ends.
+ * Game g of a pairing starts from a few random moves drawn from that seed, never
+ * immediate wins, so that deterministic agents do not replay one game over and
+ * over; the first of the pair moves first in even games, and the first mover
+ * plays the odds in games whose g / 2 is even. The same seed therefore plays
+ * the same games.
+ */
+public class T3Tournament {
+
+    // Constants
+    // -----------------------------------------------------------------------------
+    // The normal quantile of two-sided 95% confidence intervals
+    public static final double Z_95 = 1.959963984540054;
+    public static final String CSV_HEADER = "agent,opponent,games,wins,losses,ties,win_rate,win_ci_low,win_ci_high,"
+            + "moves,p50_ms,p90_ms,p99_ms,max_ms,nodes_per_sec";
+
+    // Private Fields
+    // -----------------------------------------------------------------------------
+    private final T3Rules rules;
+    private final int openingMoves;
+    private final Map<String, LongFunction<T3Agent>> entrants = new LinkedHashMap<>();
+
+    // Constructors
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Creates a tournament without entrants.
+     *
+     * @param rules
+     *            The variant played.
+     * @param openingMoves
+     *            The number of random moves each game starts with.
+     * @throws IllegalArgumentException
+     *             if openingMoves is negative
+     */
+    public T3Tournament (T3Rules rules, int openingMoves) {
+        if (openingMoves < 0) {
+            throw new IllegalArgumentException("Tournaments cannot open with a negative number of moves");
+        }
+        this.rules = Objects.requireNonNull(rules);
+        this.openingMoves = openingMoves;
+    }
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Enters an agent in the tournament.
+     *
+     * @param name
+     *            The agent's name in the results, unique within the tournament.
+     * @param factory
+     *            Creates a fresh agent for a game, given the game's seed.
+     * @throws IllegalArgumentException
+     *             if the name is already taken
+     */
+    public void addEntrant (String name, LongFunction<T3Agent> factory) {
+        if (entrants.putIfAbsent(name, Objects.requireNonNull(factory)) != null) {
+            throw new IllegalArgumentException("Tournament already has an entrant named " + name);
+        }
+    }
+
+    /**
+     * Plays every pairing of entrants the given number of times.
+     *
+     * @param gamesPerPairing
+     *            The number of games each pair plays.
+     * @param threads
+     *            The number of games played at once.
+     * @param seed
+     *            The seed of the games' openings and agents.
+     * @return Each entrant's record against each opponent, two per pairing.
+     * @throws InterruptedException
+     *             if interrupted while waiting for the games
+     * @throws IllegalArgumentException
+     *             if there are fewer than 2 entrants, or gamesPerPairing or
+     *             threads is less than 1
+     */
+    public List<Standing> play (int gamesPerPairing, int threads, long seed) throws InterruptedException {
+        if (entrants.size() < 2 || gamesPerPairing < 1 || threads < 1) {
+            throw new IllegalArgumentException("Tournaments need 2 entrants, 1 game per pairing, and 1 thread");
+        }
+        List<String> names = new ArrayList<>(entrants.keySet());
+        List<Standing> standings = new ArrayList<>();
+        ExecutorService games = Executors.newFixedThreadPool(threads);
+        try {
+            for (int a = 0; a < names.size(); a++) {
+                for (int b = a + 1; b < names.size(); b++) {
+                    List<Callable<Game>> pairing = new ArrayList<>();
+                    SplittableRandom seeds = new SplittableRandom(seed ^ (31L * a + b) * 0x9E3779B97F4A7C15L);
+                    for (int g = 0; g < gamesPerPairing; g++) {
+                        final int game = g;
+                        final long gameSeed = seeds.nextLong();
+                        final String first = names.get(a), second = names.get(b);
+                        pairing.add(() -> playGame(first, second, game, gameSeed));
+                    }
+                    Standing first = new Standing(names.get(a), names.get(b));
+                    Standing second = new Standing(names.get(b), names.get(a));
+                    for (Future<Game> played : games.invokeAll(pairing)) {
+                        Game game = result(played);
+                        first.record(game, 0);
+                        second.record(game, 1);
+                    }
+                    standings.add(first);
+                    standings.add(second);
+                }
+            }
+        } finally {
+            games.shutdownNow();
+        }
+        return standings;
+    }
+
+    /**
+     * Writes the given standings to a CSV file, one row each under CSV_HEADER,
+     * replacing the file if it exists.
+     *
+     * @param standings
+     *            The standings, as returned by play.
+     * @param file
+     *            Where to write them.
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public static void writeCsv (List<Standing> standings, Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(CSV_HEADER);
+        for (Standing standing : standings) {
+            lines.add(standing.toCsv());
+        }
+        Files.write(file, lines);
+    }
+
+    /**
+     * Returns the Wilson score interval of a binomial proportion, which unlike the
+     * normal approximation stays within [0, 1] and behaves near 0 and 1.
+     *
+     * @param successes
+     *            The number of successes.
+     * @param trials
+     *            The number of trials, at least 1.
+     * @param z
+     *            The normal quantile of the confidence level, e.g., Z_95.
+     * @return The interval's lower and upper ends.
+     */
+    public static double[] wilson (long successes, long trials, double z) {
+        double p = (double) successes / trials, z2 = z * z;
+        double center = (p + z2 / (2 * trials)) / (1 + z2 / trials);
+        double margin = z / (1 + z2 / trials) * Math.sqrt(p * (1 - p) / trials + z2 / (4.0 * trials * trials));
+        return new double[] {Math.max(0, center - margin), Math.min(1, center + margin)};
+    }
+
+    /**
+     * Tool that pits a T3Player against a T3MonteCarloPlayer on the standard
+     * game and writes the results as CSV.
+     *
+     * @param args
+     *            The CSV file, then optionally the games per pairing, the number
+     *            of threads, and the seed.
+     * @throws Exception
+     *             if the games are interrupted or the file cannot be written
+     */
+    public static void main (String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: T3Tournament <results.csv> [games] [threads] [seed]");
+            System.exit(1);
+        }
+        int games = (args.length > 1) ? Integer.parseInt(args[1]) : 1000;
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seed = (args.length > 3) ? Long.parseLong(args[3]) : 2130;
+        T3Tournament tournament = new T3Tournament(T3Rules.STANDARD, 2);
+        tournament.addEntrant("minimax", gameSeed -> new T3Player());
+        tournament.addEntrant("mcts-2000", gameSeed -> new T3MonteCarloPlayer(2_000, gameSeed));
+        List<Standing> standings = tournament.play(games, threads, seed);
+        writeCsv(standings, Paths.get(args[0]));
+        standings.forEach(System.out::println);
+    }
+
+    /**
+     * Plays one game between fresh agents of the given entrants, closing them
+     * when it ends. An agent that answers with an illegal action, or none,
+     * forfeits.
+     */
+    private Game playGame (String first, String second, int index, long seed) {
+        SplittableRandom rng = new SplittableRandom(seed);
+        long firstSeed = rng.nextLong(), secondSeed = rng.nextLong();
+        try (T3Agent firstAgent = entrants.get(first).apply(firstSeed);
+                T3Agent secondAgent = entrants.get(second).apply(secondSeed)) {
+            return playGame(new T3Agent[] {firstAgent, secondAgent}, index, rng);
+        }
+    }
+
+    /**
+     * Plays game number index of a pairing between the given agents.
+     */
+    private Game playGame (T3Agent[] agents, int index, SplittableRandom rng) {
+        // Whether the first mover plays odds, and so whether the first entrant does
+        boolean oddsMoveFirst = (index / 2) % 2 == 0;
+        boolean firstIsOdds = (index % 2 == 0) == oddsMoveFirst;
+        T3State state = opening(new T3State(rules, oddsMoveFirst), rng);
+        // The agent to move is the one playing the parity to move
+        int mover = (state.isOddsTurn() == firstIsOdds) ? 0 : 1;
+        Game game = new Game();
+        while (!state.isWin() && !state.isTie()) {
+            long start = System.nanoTime();
+            T3Action act = agents[mover].choose(state);
+            long nanos = System.nanoTime() - start;
+            game.latencies.get(mover).add(nanos);
+            game.nanos[mover] += nanos;
+            game.nodes[mover] += agents[mover].getNodes();
+            if (act == null || !state.isValidAction(act)) {
+                game.winner = 1 - mover;
+                return game;
+            }
+            state = state.getNextState(act);
+            mover = 1 - mover;
+        }
+        // A win was made by the player who moved last
+        game.winner = state.isWin() ? 1 - mover : -1;
+        return game;
+    }
+
+    /**
+     * @return The given state after up to openingMoves random moves, none of
+     *         which wins at once.
+     */
+    private T3State opening (T3State state, SplittableRandom rng) {
+        for (int move = 0; move < openingMoves; move++) {
+            List<T3Action> quiet = new ArrayList<>();
+            for (T3Action act : state.getActions()) {
+                if (!state.getNextState(act).isWin()) {
+                    quiet.add(act);
+                }
+            }
+            if (quiet.isEmpty() || state.getNextState(quiet.get(0)).isTie()) {
+                break;
+            }
+            state = state.getNextState(quiet.get(rng.nextInt(quiet.size())));
+        }
+        return state;
+    }
+
+    /**
+     * @return The finished game of the given future, rethrowing its failure.
+     */
+    private static Game result (Future<Game> played) throws InterruptedException {
+        try {
+            return played.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("T3 tournament game failed", e.getCause());
+        }
+    }
+
+    /**
+     * The outcome of one game, with each side's time and nodes: index 0 for the
+     * first entrant of the pairing, 1 for the second.
+     */
+    private static class Game {
+
+        int winner;
+        final List<List<Long>> latencies = List.of(new ArrayList<>(), new ArrayList<>());
+        final long[] nanos = new long[2], nodes = new long[2];
+
+    }
+
+    /**
+     * One entrant's record against one opponent.
+     */
+    public static class Standing {
+
+        private final String agent, opponent;
+        private long wins, losses, ties, nanos, nodes;
+        private final List<Long> latencies = new ArrayList<>();
+
+        Standing (String agent, String opponent) {
+            this.agent = agent;
+            this.opponent = opponent;
+        }
+
+        /**
+         * Adds a game to the record, in which this entrant had the given side.
+         */
+        void record (Game game, int side) {
+            wins += (game.winner == side) ? 1 : 0;
+            losses += (game.winner == 1 - side) ? 1 : 0;
+            ties += (game.winner == -1) ? 1 : 0;
+            nanos += game.nanos[side];
+            nodes += game.nodes[side];
+            latencies.addAll(game.latencies.get(side));
+        }
+
+        /**
+         * @return The entrant's name.
+         */
+        public String agent () {
+            return this.agent;
+        }
+
+        /**
+         * @return The opponent's name.
+         */
+        public String opponent () {
+            return this.opponent;
+        }
+
+        /**
+         * @return The number of games played.
+         */
+        public long games () {
+            return wins + losses + ties;
+        }
+
+        /**
+         * @return The number of games won.
+         */
+        public long wins () {
+            return this.wins;
+        }
+
+        /**
+         * @return The number of games lost.
+         */
+        public long losses () {
+            return this.losses;
+        }
+
+        /**
+         * @return The number of games tied.
+         */
+        public long ties () {
+            return this.ties;
+        }
+
+        /**
+         * @return The fraction of games won.
+         */
+        public double winRate () {
+            return (double) wins / games();
+        }
+
+        /**
+         * @return The 95% Wilson interval of the win rate, lower end first.
+         */
+        public double[] winInterval () {
+            return wilson(wins, games(), Z_95);
+        }
+
+        /**
+         * @return The number of moves the entrant made.
+         */
+        public int moves () {
+            return latencies.size();
+        }
+
+        /**
+         * Returns a percentile of the entrant's time per move, by nearest rank.
+         *
+         * @param percent
+         *            The percentile, from 0 to 100.
+         * @return The time in milliseconds, 0 if the entrant made no moves.
+         */
+        public double latencyMillis (double percent) {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            int rank = (int) Math.ceil(percent / 100 * sorted.length);
+            return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)] / 1e6;
+        }
+
+        /**
+         * @return The nodes searched per second of the entrant's thinking time, 0 if
+         *         it does not count them.
+         */
+        public double nodesPerSecond () {
+            return (nanos == 0) ? 0 : nodes / (nanos / 1e9);
+        }
+
+        /**
+         * @return This standing as a row under CSV_HEADER.
+         */
+        public String toCsv () {
+            double[] interval = winInterval();
+            return String.join(",", csvField(agent), csvField(opponent), Long.toString(games()), Long.toString(wins),
+                    Long.toString(losses), Long.toString(ties), format(winRate()), format(interval[0]),
+                    format(interval[1]), Integer.toString(moves()), format(latencyMillis(50)),
+                    format(latencyMillis(90)), format(latencyMillis(99)), format(latencyMillis(100)),
+                    format(nodesPerSecond()));
+        }
+
+        @Override
+        public String toString () {
+            double[] interval = winInterval();
+            return String.format(Locale.ROOT, "%s vs %s: %d-%d-%d, win rate %.3f [%.3f, %.3f], p50 %.3f ms, p99 %.3f ms, %.0f nodes/s",
+                    agent, opponent, wins, losses, ties, winRate(), interval[0], interval[1], latencyMillis(50),
+                    latencyMillis(99), nodesPerSecond());
+        }
+
+        /**
+         * @return The given number with up to six decimals, locale-independent.
+         */
+        private static String format (double value) {
+            return String.format(Locale.ROOT, "%.6f", value);
+        }
+
+        /**
+         * @return The given text quoted for CSV if it needs to be.
+         */
+        private static String csvField (String text) {
+            boolean quote = text.contains(",") || text.contains("\"") || text.contains("\n");
+            return quote ? "\"" + text.replace("\"", "\"\"") + "\"" : text;
+        }
+
+    }
+
+}
@@ -0,0 +1,173 @@
+package main.t3;
+
+/**
+ * Fixed-size transposition table for T3 searches, remembering the minimax value
+ * of boards already searched so that a board reached again by another move order
+ * is not searched twice. Entries are indexed by a hash of the packed board and
+ * simply replace whatever occupied their slot before.
+ *
+ * [!] Values are stored from the perspective of the player to move on the
+ * stored board, so entries stay valid from one choose() to the next, whoever
+ * the searching player is. Since alpha-beta searches can end before a value
+ * is exact, each entry is flagged as EXACT, a LOWER bound, or an UPPER bound.
+ * Depth-limited searches also record how many moves ahead each entry looked,
+ * and each entry keeps the best action found, to be searched first next time.
+ *
+ * The threads of a parallel search may share a table without locking: each
+ * entry is packed into one long and stored beside its key XORed with it, so a
+ * slot half-written by one thread while another reads it fails to match its key
+ * and reads as a miss. The probe and hit counters are not synchronized, and may
+ * undercount when shared.
+ *
+ * Entry layout, from bit 0: the flag in 2 bits, the depth in 7, the best action
+ * code plus one in 12, and the signed value in the remaining 43.
+ */
+public class T3TranspositionTable {
+
+    // Constants
+    // -----------------------------------------------------------------------------
+    public static final byte EXACT = 1, LOWER = 2, UPPER = 3;
+    public static final long MISS = 0;
+    private static final int DEPTH_SHIFT = 2, MOVE_SHIFT = 9, VALUE_SHIFT = 21;
+    private static final int MAX_DEPTH = (1 << (MOVE_SHIFT - DEPTH_SHIFT)) - 1;
+    private static final int MOVE_MASK = (1 << (VALUE_SHIFT - MOVE_SHIFT)) - 1;
+
+    // Private Fields
+    // -----------------------------------------------------------------------------
+    // Per slot: the key XORed with the entry, and the entry, MISS if empty
+    private final long[] checks, entries;
+    private final int shift;
+    private long probes, hits;
+
+    // Constructors
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Creates an empty table with room for at least the given number of entries,
+     * rounded up to a power of two.
+     *
+     * @param entries
+     *            The number of entries, at least 1.
+     * @throws IllegalArgumentException
+     *             if entries is less than 1 or more than 2^30
+     */
+    public T3TranspositionTable (int entries) {
+        if (entries < 1 || entries > 1 << 30) {
+            throw new IllegalArgumentException("Transposition tables hold from 1 to 2^30 entries");
+        }
+        int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(entries - 1));
+        this.checks = new long[1 << bits];
+        this.entries = new long[1 << bits];
+        this.shift = 64 - bits;
+    }
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Looks up the entry for the given board.
+     *
+     * @param key
+     *            The packed board.
+     * @return The board's entry, or MISS if it is not stored; read it with
+     *         value, flag, depth, and move.
+     */
+    public long probe (long key) {
+        probes++;
+        int slot = slot(key);
+        long entry = entries[slot];
+        if (entry == MISS || (checks[slot] ^ entry) != key) {
+            return MISS;
+        }
+        hits++;
+        return entry;
+    }
+
+    /**
+     * @return The stored value of an entry returned by probe.
+     */
+    public static int value (long entry) {
+        return (int) (entry >> VALUE_SHIFT);
+    }
+
+    /**
+     * @return The stored flag (EXACT, LOWER, or UPPER) of an entry returned by
+     *         probe.
+     */
+    public static byte flag (long entry) {
+        return (byte) (entry & 3);
+    }
+
+    /**
+     * @return The number of moves ahead searched for an entry returned by probe.
+     */
+    public static int depth (long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & MAX_DEPTH;
+    }
+
+    /**
+     * @return The best action code of an entry returned by probe, or -1 if there
+     *         is none.
+     */
+    public static int move (long entry) {
+        return ((int) (entry >>> MOVE_SHIFT) & MOVE_MASK) - 1;
+    }
+
+    /**
+     * Stores the value of the given board, replacing whatever held its slot.
+     *
+     * @param key
+     *            The packed board.
+     * @param value
+     *            The value for the player to move on that board.
+     * @param flag
+     *            Whether the value is EXACT, a LOWER bound, or an UPPER bound.
+     * @param depth
+     *            The number of moves ahead searched, capped at 127.
+     * @param move
+     *            The best action code found on the board, or -1 if there is none.
+     */
+    public void store (long key, int value, byte flag, int depth, int move) {
+        int slot = slot(key);
+        long entry = (long) value << VALUE_SHIFT | (long) (move + 1) << MOVE_SHIFT
+                | (long) Math.min(depth, MAX_DEPTH) << DEPTH_SHIFT | flag;
+        entries[slot] = entry;
+        checks[slot] = key ^ entry;
+    }
+
+    /**
+     * @return The number of entries the table holds.
+     */
+    public int capacity () {
+        return entries.length;
+    }
+
+    /**
+     * @return The number of lookups made.
+     */
+    public long probes () {
+        return probes;
+    }
+
+    /**
+     * @return The number of lookups that found their board.
+     */
+    public long hits () {
+        return hits;
+    }
+
+    /**
+     * @return The fraction of lookups that found their board, 0 if none were made.
+     */
+    public double hitRate () {
+        return probes == 0 ? 0 : (double) hits / probes;
+    }
+
+    /**
+     * @return The slot of the given key, from the high bits of a multiplicative hash.
+     */
+    private int slot (long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+}
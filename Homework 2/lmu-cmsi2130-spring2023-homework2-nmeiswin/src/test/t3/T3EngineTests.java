@@ -0,0 +1,500 @@
+package test.t3;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import main.t3.*;
+
+/**
+ * Unit tests for the T3 search engine's internals, checking them against the
+ * T3State API that they stand in for.
+ */
+public class T3EngineTests {
+    
+    // =================================================
+    // Test Configuration
+    // =================================================
+    
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+    
+    /**
+     * Plays random legal games from the empty board, passing each state and action
+     * to the given check before the action is taken.
+     * 
+     * @param games
+     *            The number of games to play.
+     * @param check
+     *            Called with each state reached and the action taken from it.
+     */
+    static void randomGames (int games, java.util.function.BiConsumer<T3State, T3Action> check) {
+        Random rng = new Random(2130);
+        for (int g = 0; g < games; g++) {
+            T3State state = new T3State(rng.nextBoolean());
+            while (!state.isWin() && !state.isTie()) {
+                List<T3Action> actions = new ArrayList<>(state.getTransitions().keySet());
+                T3Action act = actions.get(rng.nextInt(actions.size()));
+                check.accept(state, act);
+                state = state.getNextState(act);
+            }
+        }
+    }
+    
+    /**
+     * Rebuilds a T3State from a packed board, through the public constructor.
+     */
+    static T3State stateOf (long key) {
+        int[][] grid = new int[3][3];
+        for (int i = 0; i < 9; i++) {
+            grid[i / 3][i % 3] = (int) (key >>> (3 * i) & 7);
+        }
+        return new T3State((key >>> 27 & 1) != 0, grid);
+    }
+    
+    // =================================================
+    // Unit Tests
+    // =================================================
+    
+    @Test
+    public void T3Board_applyUndo() {
+        randomGames(200, (state, act) -> {
+            T3Board board = state.getBoard();
+            long before = board.key();
+            board.apply(act);
+            T3State next = state.getNextState(act);
+            assertEquals(next.getBoard().key(), board.key());
+            assertEquals(next.isWin(), board.isWin());
+            assertEquals(next.isTie(), board.isTie());
+            assertEquals(act.move(), board.get(act.col(), act.row()));
+            board.undo(act);
+            assertEquals(before, board.key());
+        });
+    }
+    
+    @Test
+    public void T3Board_actionCursor() {
+        randomGames(200, (state, act) -> {
+            // The cursor visits exactly the transitions' actions, in order
+            T3Board board = state.getBoard();
+            long before = board.key();
+            List<T3Action> visited = new ArrayList<>();
+            for (int a = board.nextAction(0); a >= 0; a = board.nextAction(a + 1)) {
+                T3Action action = board.action(a);
+                visited.add(action);
+                board.apply(a);
+                T3State next = state.getNextState(action);
+                assertEquals(next.getBoard().key(), board.key());
+                assertEquals(next.isWin(), board.isWin());
+                board.undo(a);
+                assertEquals(before, board.key());
+            }
+            assertEquals(new ArrayList<>(state.getTransitions().keySet()), visited);
+            List<T3Action> lazy = new ArrayList<>();
+            state.getActions().forEach(lazy::add);
+            assertEquals(visited, lazy);
+        });
+    }
+    
+    @Test
+    public void T3Board_symmetries() {
+        randomGames(100, (state, act) -> {
+            T3Board board = state.getBoard();
+            long canonical = board.canonicalKey();
+            assertEquals(canonical, board.key(board.canonicalSymmetry()));
+            assertEquals(board.key(), board.key(0));
+            assertEquals(canonical == board.key(), board.isCanonical());
+            Set<Long> variants = new HashSet<>();
+            for (int s = 0; s < 8; s++) {
+                long key = board.key(s);
+                variants.add(key);
+                // Each variant has the same canonical form, and actions map onto it
+                T3Action mapped = board.transform(act, s);
+                assertEquals(act, board.restore(mapped, s));
+                T3State turned = stateOf(key);
+                assertEquals(canonical, turned.getBoard().canonicalKey());
+                assertTrue(turned.isValidAction(mapped));
+                assertEquals(stateOf(state.getNextState(act).getBoard().key(s)), turned.getNextState(mapped));
+            }
+            assertEquals(8 / Integer.bitCount(board.stabilizer()), variants.size());
+        });
+        // The empty board is unchanged by all eight symmetries
+        assertEquals(0xFF, new T3State(true).getBoard().stabilizer());
+    }
+    
+    @Test
+    public void T3Board_threats() {
+        randomGames(100, (state, act) -> {
+            // Winning cells and actions agree with trying every action
+            T3Board board = state.getBoard();
+            long winningCells = 0;
+            T3Action firstWin = null;
+            for (T3Action action : state.getActions()) {
+                if (state.getNextState(action).isWin()) {
+                    winningCells |= 1L << (action.row() * 3 + action.col());
+                    firstWin = (firstWin == null) ? action : firstWin;
+                }
+            }
+            assertEquals(winningCells, board.threatCells(state.isOddsTurn()));
+            int winning = board.winningAction();
+            assertEquals(firstWin, (winning < 0) ? null : board.action(winning));
+        });
+    }
+    
+    @Test
+    public void T3Action_flyweight() {
+        assertSame(T3Action.of(2, 1, 5), T3Action.of(2, 1, 5));
+        assertEquals(new T3Action(2, 1, 5), T3Action.of(2, 1, 5));
+        assertEquals(Objects.hash(2, 1, 5), T3Action.of(2, 1, 5).hashCode());
+        assertEquals(new T3Action(9, 0, 1), T3Action.of(9, 0, 1));
+        // Generated actions are the shared instances
+        for (T3Action act : new T3State(true).getTransitions().keySet()) {
+            assertSame(T3Action.of(act.col(), act.row(), act.move()), act);
+        }
+        for (T3Action act : new T3State(new T3Rules(8, 64, 200), false).getActions()) {
+            assertSame(T3Action.of(act.col(), act.row(), act.move()), act);
+        }
+    }
+    
+    @Test
+    public void T3State_packedRoundTrip() {
+        int[][] grid = {
+            {3, 0, 0},
+            {0, 4, 0},
+            {0, 0, 1}
+        };
+        T3State s = new T3State(false, grid);
+        assertEquals(new T3State(false, grid), s);
+        assertNotEquals(new T3State(true, grid), s);
+        assertEquals("[3, 0, 0]\n[0, 4, 0]\n[0, 0, 1]\n", s.toString());
+        assertFalse(s.isValidAction(new T3Action(0, 0, 2)));
+        assertFalse(s.isValidAction(new T3Action(1, 0, 3)));
+        assertFalse(s.isValidAction(new T3Action(1, 3, 2)));
+        assertTrue(s.isValidAction(new T3Action(1, 0, 2)));
+    }
+    
+    @Test
+    public void T3Rules_variants() {
+        T3Rules big = new T3Rules(4, 8, 20);
+        assertTrue(T3Rules.STANDARD.isPacked());
+        assertFalse(big.isPacked());
+        assertEquals(new T3Rules(4, 8, 20), big);
+        try {
+            new T3Rules(1, 6, 13);
+            fail("Accepted a 1 x 1 board");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            new T3Rules(3, 1, 13);
+            fail("Accepted rules leaving evens no numbers");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            new T3State(big, true, new int[3][3]);
+            fail("Accepted a 3 x 3 grid for a 4 x 4 variant");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        
+        // Zobrist keys agree however a position is reached
+        T3State empty = new T3State(big, true);
+        T3State a = empty.getNextState(new T3Action(0, 0, 1)).getNextState(new T3Action(3, 3, 8))
+                .getNextState(new T3Action(1, 2, 3)).getNextState(new T3Action(2, 1, 2));
+        T3State b = empty.getNextState(new T3Action(1, 2, 3)).getNextState(new T3Action(2, 1, 2))
+                .getNextState(new T3Action(0, 0, 1)).getNextState(new T3Action(3, 3, 8));
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertNotEquals(new T3State(true), new T3State(T3Rules.STANDARD, false));
+        assertEquals(new T3State(true), new T3State(T3Rules.STANDARD, true));
+        assertEquals(4 * 4 * 4, empty.getTransitions().size());
+        assertTrue(empty.isValidAction(new T3Action(3, 3, 7)));
+        assertFalse(empty.isValidAction(new T3Action(3, 3, 9)));
+        assertFalse(empty.isValidAction(new T3Action(4, 0, 1)));
+        assertFalse(empty.isValidAction(new T3Action(0, 0, 0)));
+    }
+    
+    @Test
+    public void T3Player_depthLimitedVariant() {
+        T3Rules big = new T3Rules(4, 8, 20);
+        T3Player player = new T3Player(1 << 16, 3);
+        try {
+            new T3Player(16, 0);
+            fail("Accepted a search depth of 0");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        
+        // Too big to solve, but a shallow search still picks a legal move
+        T3State empty = new T3State(big, true);
+        assertTrue(empty.isValidAction(player.choose(empty)));
+        
+        // Immediate wins are taken...
+        int[][] winnable = {
+            {2, 4, 7, 0},
+            {0, 0, 0, 0},
+            {0, 0, 0, 0},
+            {0, 0, 0, 0}
+        };
+        assertEquals(new T3Action(3, 0, 7), player.choose(new T3State(big, true, winnable)));
+        
+        // ...and the opponent's are blocked
+        int[][] threatened = {
+            {8, 6, 4, 0},
+            {0, 0, 0, 0},
+            {0, 0, 0, 0},
+            {0, 0, 0, 0}
+        };
+        T3State next = new T3State(big, true, threatened).getNextState(player.choose(new T3State(big, true, threatened)));
+        for (T3Action reply : next.getActions()) {
+            assertFalse(next.getNextState(reply).isWin());
+        }
+    }
+    
+    @Test
+    public void T3Player_iterativeDeepening() {
+        // Given time to finish, deepening reaches the same choice as a full search
+        T3Player plain = new T3Player(), timed = new T3Player(1 << 16, Integer.MAX_VALUE, T3Evaluator.THREATS, 10_000);
+        randomGames(20, (state, act) -> {
+            if (state.getTransitions().size() <= 5 * 3) {
+                assertEquals(plain.choose(state), timed.choose(state));
+            }
+        });
+        
+        // The evaluator favors the player with more lines to win on
+        int[][] threats = {
+            {3, 5, 0},
+            {0, 0, 0},
+            {0, 0, 0}
+        };
+        assertEquals(1, T3Evaluator.THREATS.evaluate(new T3State(true, threats).getBoard()));
+        assertEquals(-1, T3Evaluator.THREATS.evaluate(new T3State(false, threats).getBoard()));
+        
+        // On a board far too big to solve, the clock stops the search
+        T3State empty = new T3State(new T3Rules(5, 10, 30), true);
+        T3Player hurried = new T3Player(1 << 16, Integer.MAX_VALUE, T3Evaluator.THREATS, 200);
+        long start = System.nanoTime();
+        T3Action chosen = hurried.choose(empty);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(empty.isValidAction(chosen));
+        assertTrue(hurried.getCompletedDepth() >= 1 && hurried.getCompletedDepth() < 25);
+        assertTrue("Took " + millis + " ms", millis < 2_000);
+
+        // Leaves count towards the next look at the clock too, so even where each
+        // node has hundreds of children the search stops soon after its deadline
+        T3State wide = new T3State(new T3Rules(8, 16, 68), true);
+        T3Player wideHurried = new T3Player(1 << 16, Integer.MAX_VALUE, T3Evaluator.THREATS, 100);
+        wideHurried.choose(wide);
+        start = System.nanoTime();
+        assertTrue(wide.isValidAction(wideHurried.choose(wide)));
+        millis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue("Took " + millis + " ms", millis < 400);
+    }
+    
+    @Test
+    public void T3Player_parallelAgreesWithSequential() {
+        T3Player sequential = new T3Player(), parallel = new T3Player(1 << 16, Integer.MAX_VALUE, T3Evaluator.NONE, 0, 4);
+        for (boolean odds : new boolean[] {true, false}) {
+            T3State empty = new T3State(odds);
+            assertEquals(sequential.choose(empty), parallel.choose(empty));
+        }
+        randomGames(20, (state, act) -> {
+            if (state.getTransitions().size() <= 7 * 3) {
+                assertEquals(sequential.choose(state), parallel.choose(state));
+            }
+        });
+        
+        parallel.close();
+        
+        // Parallel searches stop at the deadline too
+        T3State empty = new T3State(new T3Rules(5, 10, 30), false);
+        try (T3Player hurried = new T3Player(1 << 16, Integer.MAX_VALUE, T3Evaluator.THREATS, 200, 4)) {
+            assertTrue(empty.isValidAction(hurried.choose(empty)));
+            assertTrue(hurried.getCompletedDepth() >= 1);
+        }
+
+        // ...promptly, even with thousands of children below each node, since the
+        // first thread past the deadline stops the rest, forked or not
+        T3State wide = new T3State(new T3Rules(8, 64, 260), true);
+        for (int threads : new int[] {2, 4}) {
+            try (T3Player hurried = new T3Player(1 << 16, Integer.MAX_VALUE, T3Evaluator.THREATS, 200, threads)) {
+                for (int move = 0; move < 2; move++) {
+                    long start = System.nanoTime();
+                    assertTrue(wide.isValidAction(hurried.choose(wide)));
+                    long millis = (System.nanoTime() - start) / 1_000_000;
+                    assertTrue(threads + " threads took " + millis + " ms", millis < 1_000);
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void T3MonteCarloPlayer_playsSensibly() {
+        // Immediate wins are taken, and threats blocked
+        T3Agent mcts = new T3MonteCarloPlayer(5_000, 2130);
+        int[][] winnable = {
+            {3, 4, 0},
+            {0, 0, 0},
+            {0, 0, 0}
+        };
+        assertEquals(new T3Action(2, 0, 6), mcts.choose(new T3State(false, winnable)));
+        T3State threatened = new T3State(true, winnable);
+        T3State next = threatened.getNextState(mcts.choose(threatened));
+        for (T3Action reply : next.getActions()) {
+            assertFalse(next.getNextState(reply).isWin());
+        }
+        
+        // The same seed and budget make the same choices, reusing the tree
+        T3MonteCarloPlayer a = new T3MonteCarloPlayer(2_000, 7), b = new T3MonteCarloPlayer(2_000, 7);
+        T3State state = new T3State(true);
+        for (int ply = 0; ply < 4; ply++) {
+            T3Action chosen = a.choose(state);
+            assertEquals(chosen, b.choose(state));
+            assertTrue(state.isValidAction(chosen));
+            state = state.getNextState(chosen);
+        }
+        assertEquals(2_000, a.getPlayouts());
+        
+        // Root-parallel searches on a big board stop at the deadline
+        T3State big = new T3State(new T3Rules(6, 12, 39), true);
+        try (T3MonteCarloPlayer timed = new T3MonteCarloPlayer(T3MonteCarloPlayer.DEFAULT_EXPLORATION, 0, 200, 4, 1)) {
+            long start = System.nanoTime();
+            assertTrue(big.isValidAction(timed.choose(big)));
+            assertTrue(timed.getPlayouts() > 0);
+            assertTrue((System.nanoTime() - start) / 1_000_000 < 2_000);
+        }
+    }
+    
+    @Test
+    public void T3Player_countsNodes() {
+        T3Player plain = new T3Player(0), cached = new T3Player();
+        T3State state = new T3State(true, new int[][] {{1, 0, 0}, {0, 0, 0}, {0, 0, 0}});
+        assertEquals(plain.choose(state), cached.choose(state));
+        assertTrue(plain.getNodes() > 0);
+        assertTrue(cached.getNodes() < plain.getNodes());
+        
+        // A state answered without searching counts no nodes
+        plain.choose(new T3State(true, new int[][] {{3, 5, 0}, {0, 0, 0}, {0, 0, 0}}));
+        assertEquals(0, plain.getNodes());
+    }
+    
+    @Test
+    public void T3Player_tableAgreesWithPlainSearch() {
+        T3Player plain = new T3Player(0), cached = new T3Player(), tiny = new T3Player(4);
+        randomGames(40, (state, act) -> {
+            // Skip the slow opening positions
+            if (state.getTransitions().size() <= 7 * 3) {
+                T3Action expected = plain.choose(state);
+                assertEquals(expected, cached.choose(state));
+                assertEquals(expected, tiny.choose(state));
+            }
+        });
+        assertNull(plain.getTable());
+        assertTrue(cached.getTable().hits() > 0);
+        assertTrue(cached.getTable().hitRate() > tiny.getTable().hitRate());
+    }
+    
+    @Test
+    public void T3Tournament_playsSeededRoundRobin() throws Exception {
+        T3Tournament tournament = new T3Tournament(T3Rules.STANDARD, 0);
+        tournament.addEntrant("minimax", seed -> new T3Player());
+        tournament.addEntrant("mcts", seed -> new T3MonteCarloPlayer(200, seed));
+        try {
+            tournament.addEntrant("mcts", seed -> new T3MonteCarloPlayer(100, seed));
+            fail("Entrant names should be unique");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        // Every game's agents are closed when it ends, releasing their threads
+        int[] closed = new int[1];
+        tournament.addEntrant("parallel", seed -> new T3Player(1 << 12, 2, T3Evaluator.THREATS, 0, 2) {
+            @Override
+            public void close () {
+                super.close();
+                synchronized (closed) {
+                    closed[0]++;
+                }
+            }
+        });
+        List<T3Tournament.Standing> all = tournament.play(4, 2, 2130);
+        assertEquals(6, all.size());
+        synchronized (closed) {
+            assertEquals(8, closed[0]);
+        }
+        List<T3Tournament.Standing> standings = all.subList(0, 2);
+        assertEquals(2, standings.size());
+        T3Tournament.Standing minimax = standings.get(0), mcts = standings.get(1);
+        assertEquals("minimax", minimax.agent());
+        assertEquals("mcts", minimax.opponent());
+        assertEquals(4, minimax.games());
+        assertEquals(minimax.wins(), mcts.losses());
+        assertEquals(minimax.ties(), mcts.ties());
+        // Evens wins the standard game with perfect play, and plays evens in half
+        // the games of each pairing
+        assertTrue(minimax.wins() >= 2);
+        double[] interval = minimax.winInterval();
+        assertTrue(0 <= interval[0] && interval[0] <= minimax.winRate() && minimax.winRate() <= interval[1] && interval[1] <= 1);
+        assertTrue(minimax.moves() > 0 && minimax.latencyMillis(50) <= minimax.latencyMillis(100));
+        assertTrue(minimax.nodesPerSecond() > 0);
+        
+        // The same seed plays the same games
+        List<T3Tournament.Standing> replayed = tournament.play(4, 1, 2130);
+        assertEquals(mcts.wins(), replayed.get(1).wins());
+        assertEquals(mcts.ties(), replayed.get(1).ties());
+        
+        Path file = Files.createTempFile("t3", ".csv");
+        try {
+            T3Tournament.writeCsv(standings, file);
+            List<String> lines = Files.readAllLines(file);
+            assertEquals(T3Tournament.CSV_HEADER, lines.get(0));
+            assertEquals(3, lines.size());
+            assertTrue(lines.get(1).startsWith("minimax,mcts,4,"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+    
+    @Test
+    public void T3EndgameTable_agreesWithSearch() throws IOException {
+        Path file = Files.createTempFile("t3", ".table");
+        try {
+            T3EndgameTable.write(file);
+            T3EndgameTable endgame = T3EndgameTable.open(file);
+            T3Player search = new T3Player(), solved = new T3Player(endgame);
+            for (boolean odds : new boolean[] {true, false}) {
+                T3State empty = new T3State(odds);
+                assertEquals(search.choose(empty), solved.choose(empty));
+            }
+            randomGames(25, (state, act) -> {
+                assertTrue(endgame.contains(state));
+                // Skip the slow opening positions
+                if (state.getTransitions().size() > 7 * 3) {
+                    return;
+                }
+                T3Action expected = search.choose(state);
+                assertEquals(expected, endgame.bestAction(state));
+                assertEquals(expected, solved.choose(state));
+                // A winning move leaves the opponent lost, or wins outright
+                T3State next = state.getNextState(expected);
+                if (!next.isWin() && !next.isTie()) {
+                    assertEquals(-endgame.value(state), endgame.value(next));
+                }
+            });
+            // Boards no game can reach fall back to searching
+            T3State unreachable = new T3State(true, new int[][] {{1, 3, 0}, {0, 0, 0}, {0, 0, 0}});
+            assertFalse(endgame.contains(unreachable));
+            assertNull(endgame.bestAction(unreachable));
+            assertEquals(search.choose(unreachable), solved.choose(unreachable));
+        } finally {
+            Files.delete(file);
+        }
+    }
+    
+}